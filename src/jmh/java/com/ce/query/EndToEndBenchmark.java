@@ -0,0 +1,137 @@
+package com.ce.query;
+
+import com.ce.query.contract.IRow;
+import com.ce.query.contract.IRowToEntityHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * build, execute and map against in-memory H2, the way applications use Query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EndToEndBenchmark {
+
+    @Param({"100", "10000"})
+    int rowCount;
+
+    @Param({"4", "40"})
+    int columnCount;
+
+    @Param({"0", "100", "1000"})
+    int inListSize;
+
+    Connection connection;
+    Object[] ids;
+
+    static class BenchPeople {
+        Integer id;
+        String name;
+        Integer age;
+    }
+
+    static class BenchPeopleRowMapping implements IRowToEntityHandler<BenchPeople> {
+        @Override
+        public BenchPeople map(IRow row) {
+            BenchPeople p = new BenchPeople();
+            p.id = row.getAs("id", Integer.class);
+            p.name = row.getAs("name", String.class);
+            p.age = row.getAs("age", Integer.class);
+            return p;
+        }
+    }
+
+    static final BenchPeopleRowMapping MAPPING = new BenchPeopleRowMapping();
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:endToEndBenchmark;DB_CLOSE_DELAY=-1");
+
+        StringBuilder ddl = new StringBuilder("drop table if exists bench_people; ")
+                .append("create table bench_people (id integer primary key, name varchar, age integer");
+        List<String> extraColumns = new ArrayList<>();
+        for (int c = 3; c < columnCount; c++) {
+            String column = "col_" + c;
+            extraColumns.add(column);
+            ddl.append(", ").append(column).append(" varchar");
+        }
+        ddl.append(")");
+        Query.connect(connection).execute(ddl.toString());
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "TEST " + i);
+            row.put("age", i % 100);
+            for (String column : extraColumns) {
+                row.put(column, column + " value " + i);
+            }
+            rows.add(row);
+        }
+        Query.connect(connection).table("bench_people").insertBatch(rows, 1000);
+
+        ids = new Object[inListSize];
+        for (int i = 0; i < inListSize; i++) {
+            ids[i] = i * 7 % Math.max(1, rowCount);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        Query.connect(connection).execute("drop table if exists bench_people");
+        connection.close();
+    }
+
+    private Query query() {
+        Query query = Query.connect(connection)
+                .table("bench_people")
+                .where("age >= :age")
+                .param("age", 0);
+        if (inListSize > 0) {
+            query.whereIn("id", ids);
+        }
+        return query;
+    }
+
+    @Benchmark
+    public List<BenchPeople> all() {
+        return query().all(MAPPING);
+    }
+
+    @Benchmark
+    public List<Row> allRows() {
+        return query().all();
+    }
+
+    @Benchmark
+    public long stream() {
+        return query().stream(MAPPING).count();
+    }
+
+    @Benchmark
+    public BenchPeople first() {
+        return query().first(MAPPING);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ce.query;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * extraction of rows from an in-memory result set, the same steps as <code>Query._extractResult</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExtractResultBenchmark {
+
+    @Param({"10", "1000"})
+    int rowCount;
+
+    @Param({"4", "16", "40"})
+    int columnCount;
+
+    SimpleResultSet rs;
+
+    @Setup
+    public void setup() {
+        rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        for (int c = 0; c < columnCount; c++) {
+            if (c % 2 == 0) {
+                rs.addColumn("COL_" + c, Types.INTEGER, 10, 0);
+            } else {
+                rs.addColumn("COL_" + c, Types.VARCHAR, 255, 0);
+            }
+        }
+
+        for (int r = 0; r < rowCount; r++) {
+            Object[] values = new Object[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                values[c] = c % 2 == 0 ? (Object) (r * c) : "value " + r + " " + c;
+            }
+            rs.addRow(values);
+        }
+    }
+
+    @Benchmark
+    public List<Row> extract() throws SQLException {
+        rs.beforeFirst();
+
+        List<Row> result = new ArrayList<>();
+        RowSchema schema = RowSchema.of(rs.getMetaData());
+        while (rs.next()) {
+            result.add(schema.read(rs));
+        }
+        return result;
+    }
+}
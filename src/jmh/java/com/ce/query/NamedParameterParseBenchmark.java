@@ -0,0 +1,51 @@
+package com.ce.query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * parsing of named parameters, with and without the shared parse cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NamedParameterParseBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int inListSize;
+
+    String query;
+
+    @Setup
+    public void setup() {
+        query = "select * from people where name = :name and note <> ':not_a_param' and id in ( "
+                + SQLHelper.generateArrayOfNamedParameterString("id", inListSize)
+                + " ) order by id";
+    }
+
+    @Benchmark
+    public Map<String, int[]> parse() {
+        Map<String, int[]> map = new HashMap<>();
+        NamedParameterStatement.parse(query, map);
+        return map;
+    }
+
+    @Benchmark
+    public ParsedSql parseCached() {
+        return NamedParameterStatement.parse(query);
+    }
+}
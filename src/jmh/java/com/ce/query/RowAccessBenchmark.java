@@ -0,0 +1,74 @@
+package com.ce.query;
+
+import com.ce.query.converter.DataConverterManager;
+import com.ce.query.converter.IDataConverter;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * typed access of row values and converter lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RowAccessBenchmark {
+
+    Row row;
+
+    @Setup
+    public void setup() throws SQLException {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("ID", Types.INTEGER, 10, 0);
+        rs.addColumn("NAME", Types.VARCHAR, 255, 0);
+        rs.addColumn("AGE", Types.INTEGER, 10, 0);
+        rs.addColumn("CREATED_AT", Types.TIMESTAMP, 26, 0);
+        rs.addRow(1, "TEST 1", 20, new Timestamp(System.currentTimeMillis()));
+        rs.next();
+
+        row = RowSchema.of(rs.getMetaData()).read(rs);
+    }
+
+    @Benchmark
+    public void getAs(Blackhole blackhole) {
+        blackhole.consume(row.getAs("id", Integer.class));
+        blackhole.consume(row.getAs("name", String.class));
+        blackhole.consume(row.getAs("age", Integer.class));
+        blackhole.consume(row.getAs("created_at", Timestamp.class));
+    }
+
+    @Benchmark
+    public int getInt() {
+        return row.getInt("id") + row.getInt("age");
+    }
+
+    @Benchmark
+    public Object get() {
+        return row.get("name");
+    }
+
+    @Benchmark
+    public IDataConverter<Integer> lookupInteger() {
+        return DataConverterManager.INSTANCE.lookup(Integer.class);
+    }
+
+    @Benchmark
+    public IDataConverter<Timestamp> lookupTimestamp() {
+        return DataConverterManager.INSTANCE.lookup(Timestamp.class);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ce.query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL rendering of the Query builder, without execution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SqlBuildBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int inListSize;
+
+    Connection connection;
+    Object[] ids;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:sqlBuildBenchmark");
+        ids = new Object[inListSize];
+        for (int i = 0; i < inListSize; i++) {
+            ids[i] = i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public String toSql() {
+        return Query.connect(connection)
+                .table("people")
+                .select("people.id, people.name, people.age")
+                .join("student", "people.id = student.id")
+                .where("people.age > :age")
+                .where("people.name", "TEST")
+                .whereIn("people.id", ids)
+                .whereLike("student.name", "student")
+                .orderBy("people.id", "asc")
+                .param("age", 10)
+                .toSql();
+    }
+
+    @Benchmark
+    public String toPaginatedSql() {
+        return Query.connect(connection)
+                .table("people")
+                .where("name", "TEST")
+                .whereIn("id", ids)
+                .paginate(3, 20)
+                .compile()
+                .getSql();
+    }
+
+    /**
+     * search screen with many criteria, rendering must stay linear in their number
+     */
+    @Benchmark
+    public String toSearchSql() {
+        Query query = Query.connect(connection)
+                .table("people");
+        for (int i = 0; i < 20; i++) {
+            query.where("age", ">", i)
+                    .whereBetween("id", i, i + 100)
+                    .whereAny(any -> any.isNull("name").where("name", "<>", "TEST"));
+        }
+        return query.toSql();
+    }
+}
@@ -0,0 +1,41 @@
+package com.ce.query;
+
+/**
+ * Batch size which follows observed flush latency. <br>
+ * Size is doubled while flushes are much faster than the target, and halved while they are slower.
+ */
+class AdaptiveBatchSize {
+
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private int current;
+
+    AdaptiveBatchSize(int initial, int min, int max, long targetNanos) {
+        this.min = min;
+        this.max = max;
+        this.targetNanos = targetNanos;
+        this.current = Math.max(min, Math.min(max, initial));
+    }
+
+    int get() {
+        return current;
+    }
+
+    /**
+     * record a flush of given rows. Only full batches adapt the size, a partial batch, e.g. the last one of the rows,
+     * is ignored, so the size does not change if all rows fit in one batch.
+     *
+     * @param rows
+     * @param elapsedNanos
+     */
+    void record(int rows, long elapsedNanos) {
+        if (targetNanos <= 0 || rows < current) return;
+
+        if (elapsedNanos > targetNanos + targetNanos / 2) {
+            current = Math.max(min, current / 2);
+        } else if (elapsedNanos < targetNanos / 2) {
+            current = (int) Math.min((long) max, (long) current * 2);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ce.query;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Param value bound as one SQL array, the array is created from the connection of the statement when bound.
+ */
+final class ArrayParameter {
+
+    private final String typeName;
+    private final Object[] values;
+
+    ArrayParameter(String typeName, Object[] values) {
+        this.typeName = typeName;
+        this.values = values;
+    }
+
+    Array create(Connection connection) throws SQLException {
+        return connection.createArrayOf(typeName, values);
+    }
+}
@@ -0,0 +1,429 @@
+package com.ce.query;
+
+import com.ce.query.contract.IRow;
+import com.ce.query.contract.IRowToEntityHandler;
+import com.ce.query.converter.DataConverterManager;
+import com.ce.query.exception.QueryException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapper of a bean class, created by {@link RowMappers#forClass(Class)}. <br>
+ * Columns are bound to fields or setters by name, ignoring case and underscores, e.g. <code>created_at</code>
+ * is bound to <code>createdAt</code>. When used by Query actions, bindings are resolved once per result schema
+ * and values are read straight from the result set with typed getters, without building rows.
+ * Null values leave the property with its initial value.
+ *
+ * @param <T>
+ */
+public class BeanRowMapper<T> implements IRowToEntityHandler<T> {
+
+    private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Map<String, Property> properties;
+    private final ConcurrentHashMap<String, Plan<T>> plans = new ConcurrentHashMap<>();
+
+    BeanRowMapper(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            Constructor<T> declared = type.getDeclaredConstructor();
+            declared.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(declared).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException e) {
+            throw new QueryException(type.getName() + " has no default constructor", e);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new QueryException("can not access constructor of " + type.getName(), e);
+        }
+
+        this.properties = resolveProperties(type, lookup);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * map a row, used when a row is already extracted
+     *
+     * @param row
+     * @return null if row is null
+     */
+    @Override
+    public T map(IRow row) {
+        if (row == null) return null;
+
+        Object bean = newInstance();
+
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            Property property = properties.get(normalize(entry.getKey()));
+            Object value = entry.getValue();
+            if (property == null || value == null) continue;
+
+            try {
+                property.setter.invokeExact(bean, convert(value, property.type));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new QueryException("can not set " + property.name + " of " + type.getName(), e);
+            }
+        }
+
+        return type.cast(bean);
+    }
+
+    /**
+     * bindings of the result set, resolved once per column labels
+     *
+     * @param meta
+     * @return
+     * @throws SQLException
+     */
+    Plan<T> plan(ResultSetMetaData meta) throws SQLException {
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        StringBuilder key = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            labels[i - 1] = meta.getColumnLabel(i).toLowerCase();
+            key.append(labels[i - 1]).append(',');
+        }
+
+        Plan<T> plan = plans.get(key.toString());
+        if (plan == null) {
+            plan = createPlan(labels);
+            plans.putIfAbsent(key.toString(), plan);
+        }
+        return plan;
+    }
+
+    private Plan<T> createPlan(String[] labels) {
+        Map<Property, Binding> bindings = new HashMap<>();
+
+        for (int i = 0; i < labels.length; i++) {
+            Property property = properties.get(normalize(labels[i]));
+            // duplicated labels keep the first column, like Row
+            if (property == null || bindings.containsKey(property)) continue;
+            bindings.put(property, Binding.of(property, i + 1));
+        }
+
+        return new Plan<>(this, bindings.values().toArray(new Binding[0]));
+    }
+
+    private Object newInstance() {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new QueryException("can not create " + type.getName(), e);
+        }
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        Class<?> boxed = box(type);
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (boxed == Integer.class) return number.intValue();
+            if (boxed == Long.class) return number.longValue();
+            if (boxed == Double.class) return number.doubleValue();
+            if (boxed == Float.class) return number.floatValue();
+            if (boxed == Short.class) return number.shortValue();
+            if (boxed == Byte.class) return number.byteValue();
+            if (boxed == BigDecimal.class) return new BigDecimal(number.toString());
+            if (boxed == Boolean.class) return number.intValue() != 0;
+        }
+
+        return DataConverterManager.INSTANCE.lookup(boxed).fromRaw(value);
+    }
+
+    static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_') {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        return type;
+    }
+
+    /**
+     * fields of the class and its super classes, overridden by setters with the same name
+     */
+    private static Map<String, Property> resolveProperties(Class<?> type, MethodHandles.Lookup lookup) {
+        Map<String, Property> properties = new HashMap<>();
+
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) continue;
+
+                String key = normalize(field.getName());
+                // field of sub class hides the one of super class
+                if (properties.containsKey(key)) continue;
+
+                try {
+                    field.setAccessible(true);
+                    properties.put(key, new Property(field.getName(), field.getType(), lookup.unreflectSetter(field)));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // not accessible, the column is ignored
+                }
+            }
+        }
+
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1
+                    || name.length() <= 3 || !name.startsWith("set")) continue;
+
+            try {
+                method.setAccessible(true);
+                properties.put(normalize(name.substring(3)),
+                        new Property(name.substring(3), method.getParameterTypes()[0], lookup.unreflect(method)));
+            } catch (IllegalAccessException | RuntimeException e) {
+                // not accessible, keep the field if any
+            }
+        }
+
+        return properties;
+    }
+
+    private static final class Property {
+        final String name;
+        final Class<?> type;
+        // (Object, Object) void
+        final MethodHandle setter;
+        // original handle, (Bean, type) returns anything
+        final MethodHandle handle;
+
+        Property(String name, Class<?> type, MethodHandle handle) {
+            this.name = name;
+            this.type = type;
+            this.handle = handle;
+            this.setter = handle.asType(MethodType.methodType(handle.type().returnType(), Object.class, type))
+                    .asType(OBJECT_SETTER);
+        }
+
+        MethodHandle typed(Class<?> valueType) {
+            return handle.asType(MethodType.methodType(void.class, Object.class, valueType));
+        }
+    }
+
+    /**
+     * reader of one column into one property
+     */
+    abstract static class Binding {
+        final int column;
+        final String name;
+
+        Binding(int column, String name) {
+            this.column = column;
+            this.name = name;
+        }
+
+        abstract void apply(Object bean, ResultSet rs) throws Throwable;
+
+        static Binding of(Property property, int column) {
+            Class<?> type = property.type;
+
+            if (type == int.class) return new IntBinding(property, column);
+            if (type == long.class) return new LongBinding(property, column);
+            if (type == double.class) return new DoubleBinding(property, column);
+            if (type == boolean.class) return new BooleanBinding(property, column);
+            if (type == Integer.class) {
+                return new ObjectBinding(property, column, (rs, i) -> {
+                    int value = rs.getInt(i);
+                    return rs.wasNull() ? null : value;
+                });
+            }
+            if (type == Long.class) {
+                return new ObjectBinding(property, column, (rs, i) -> {
+                    long value = rs.getLong(i);
+                    return rs.wasNull() ? null : value;
+                });
+            }
+            if (type == Double.class) {
+                return new ObjectBinding(property, column, (rs, i) -> {
+                    double value = rs.getDouble(i);
+                    return rs.wasNull() ? null : value;
+                });
+            }
+            if (type == Boolean.class) {
+                return new ObjectBinding(property, column, (rs, i) -> {
+                    boolean value = rs.getBoolean(i);
+                    return rs.wasNull() ? null : value;
+                });
+            }
+            if (type == String.class) return new ObjectBinding(property, column, ResultSet::getString);
+            if (type == BigDecimal.class) return new ObjectBinding(property, column, ResultSet::getBigDecimal);
+            if (type == Timestamp.class || type == java.util.Date.class) {
+                return new ObjectBinding(property, column, ResultSet::getTimestamp);
+            }
+
+            // other types go through getObject and registered converters
+            return new ObjectBinding(property, column, (rs, i) -> {
+                Object value = rs.getObject(i);
+                return value == null ? null : convert(value, type);
+            });
+        }
+    }
+
+    interface ColumnReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    static final class ObjectBinding extends Binding {
+        private final MethodHandle setter;
+        private final ColumnReader reader;
+
+        ObjectBinding(Property property, int column, ColumnReader reader) {
+            super(column, property.name);
+            this.setter = property.setter;
+            this.reader = reader;
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            Object value = reader.read(rs, column);
+            // null keeps the initial value of the bean, same as map(IRow)
+            if (value == null) return;
+            setter.invokeExact(bean, value);
+        }
+    }
+
+    static final class IntBinding extends Binding {
+        private final MethodHandle setter;
+
+        IntBinding(Property property, int column) {
+            super(column, property.name);
+            this.setter = property.typed(int.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            int value = rs.getInt(column);
+            if (rs.wasNull()) return;
+            setter.invokeExact(bean, value);
+        }
+    }
+
+    static final class LongBinding extends Binding {
+        private final MethodHandle setter;
+
+        LongBinding(Property property, int column) {
+            super(column, property.name);
+            this.setter = property.typed(long.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            long value = rs.getLong(column);
+            if (rs.wasNull()) return;
+            setter.invokeExact(bean, value);
+        }
+    }
+
+    static final class DoubleBinding extends Binding {
+        private final MethodHandle setter;
+
+        DoubleBinding(Property property, int column) {
+            super(column, property.name);
+            this.setter = property.typed(double.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            double value = rs.getDouble(column);
+            if (rs.wasNull()) return;
+            setter.invokeExact(bean, value);
+        }
+    }
+
+    static final class BooleanBinding extends Binding {
+        private final MethodHandle setter;
+
+        BooleanBinding(Property property, int column) {
+            super(column, property.name);
+            this.setter = property.typed(boolean.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            boolean value = rs.getBoolean(column);
+            if (rs.wasNull()) return;
+            setter.invokeExact(bean, value);
+        }
+    }
+
+    /**
+     * bindings of one result schema
+     *
+     * @param <T>
+     */
+    static final class Plan<T> {
+        private final BeanRowMapper<T> mapper;
+        private final Binding[] bindings;
+
+        Plan(BeanRowMapper<T> mapper, Binding[] bindings) {
+            this.mapper = mapper;
+            this.bindings = bindings;
+        }
+
+        /**
+         * read current row of result set into a new bean
+         *
+         * @param rs
+         * @return
+         * @throws SQLException
+         */
+        T read(ResultSet rs) throws SQLException {
+            Object bean = mapper.newInstance();
+
+            for (Binding binding : bindings) {
+                try {
+                    binding.apply(bean, rs);
+                } catch (SQLException | RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new QueryException("can not set " + binding.name + " of " + mapper.type.getName(), e);
+                }
+            }
+
+            return mapper.type.cast(bean);
+        }
+    }
+}
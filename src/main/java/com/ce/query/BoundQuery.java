@@ -0,0 +1,136 @@
+package com.ce.query;
+
+import com.ce.query.contract.IRowToEntityHandler;
+import com.ce.query.exception.QueryException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link CompiledQuery} with values bound by position, ready to be executed on any connection.
+ */
+public class BoundQuery {
+
+    private final ParsedSql parsed;
+    private final Object[] values;
+
+    BoundQuery(ParsedSql parsed, Object[] values) {
+        this.parsed = parsed;
+        this.values = values;
+    }
+
+    /**
+     * execute query and return all rows
+     *
+     * @param connection
+     * @return
+     */
+    public List<Row> all(Connection connection) {
+        List<Row> result = new ArrayList<>();
+        try (RowCursor cursor = cursor(connection)) {
+            while (cursor.hasNext()) {
+                result.add(cursor.next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * execute query and process all rows with given handler
+     *
+     * @param connection
+     * @param handler
+     * @param <T>
+     * @return
+     */
+    public <T> List<T> all(Connection connection, IRowToEntityHandler<T> handler) {
+        List<T> result = new ArrayList<>();
+        try (RowCursor cursor = cursor(connection)) {
+            while (cursor.hasNext()) {
+                result.add(handler.map(cursor.next()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * execute query and return a lazy cursor on its result
+     *
+     * @param connection
+     * @return
+     */
+    public RowCursor cursor(Connection connection) {
+        NamedParameterStatement statement = null;
+
+        try {
+            statement = prepare(connection);
+            ResultSet rs = statement.executeQuery();
+            return new RowCursor(statement, rs);
+        } catch (SQLException e) {
+            close(statement);
+            throw new QueryException("SQL Exception", e);
+        }
+    }
+
+    /**
+     * execute the statement, return boolean as execution result
+     *
+     * @param connection
+     * @return
+     */
+    public boolean execute(Connection connection) {
+        NamedParameterStatement statement = null;
+
+        try {
+            statement = prepare(connection);
+            return statement.execute();
+        } catch (SQLException e) {
+            throw new QueryException("SQL Exception", e);
+        } finally {
+            close(statement);
+        }
+    }
+
+    /**
+     * execute the update statement, return number of rows affected
+     *
+     * @param connection
+     * @return
+     */
+    public int executeUpdate(Connection connection) {
+        NamedParameterStatement statement = null;
+
+        try {
+            statement = prepare(connection);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new QueryException("SQL Exception", e);
+        } finally {
+            close(statement);
+        }
+    }
+
+    private NamedParameterStatement prepare(Connection connection) throws SQLException {
+        NamedParameterStatement statement = new NamedParameterStatement(connection, parsed);
+        try {
+            statement.bind(values);
+        } catch (SQLException e) {
+            close(statement);
+            throw e;
+        }
+        return statement;
+    }
+
+    private void close(NamedParameterStatement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
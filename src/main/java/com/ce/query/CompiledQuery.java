@@ -0,0 +1,86 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable query template created by {@link Query#compile()}. <br>
+ * SQL is rendered and parsed once, and the binding plan maps every <code>?</code> position to its parameter name,
+ * so a compiled query can be bound and executed many times from many threads.
+ * <code>
+ * List<People> list = compiled.bind(params).all(connection, new PeopleRowMapping());
+ * </code>
+ */
+public final class CompiledQuery {
+
+    private final String sql;
+    private final ParsedSql parsed;
+    private final Map<String, Object> defaults;
+
+    /**
+     * parameter name of each position, index 0 is the first <code>?</code>
+     */
+    private final String[] positionNames;
+
+    CompiledQuery(String sql, ParsedSql parsed, Map<String, Object> defaults) {
+        this.sql = sql;
+        this.parsed = parsed;
+        this.defaults = Collections.unmodifiableMap(new HashMap<>(defaults));
+        this.positionNames = parsed.positionNames;
+    }
+
+    /**
+     * bind with default params only
+     *
+     * @return
+     */
+    public BoundQuery bind() {
+        return bind(Collections.emptyMap());
+    }
+
+    /**
+     * bind params to the template, params override the defaults assigned before compile. <br>
+     * Every parameter in SQL must have a value, otherwise QueryException will be thrown.
+     *
+     * @param params
+     * @return
+     */
+    public BoundQuery bind(Map<String, ?> params) {
+        Object[] values = new Object[positionNames.length];
+
+        for (int i = 0; i < positionNames.length; i++) {
+            String name = positionNames[i];
+
+            if (params.containsKey(name)) {
+                values[i] = params.get(name);
+            } else if (defaults.containsKey(name)) {
+                values[i] = defaults.get(name);
+            } else {
+                throw new QueryException("parameter " + name + " is not bound");
+            }
+        }
+
+        return new BoundQuery(parsed, values);
+    }
+
+    /**
+     * the rendered SQL with named parameters
+     *
+     * @return
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public Map<String, Object> getDefaults() {
+        return defaults;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ce.query;
 
+import com.ce.query.cache.CacheStats;
 import com.ce.query.contract.IDatabaseExecution;
 import com.ce.query.contract.IDatabaseExecutionVoid;
 import com.ce.query.exception.QueryException;
@@ -7,6 +8,14 @@ import com.ce.query.exception.QueryException;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Created by dhuang on 2/23/2018.
@@ -20,8 +29,28 @@ public class DatabaseWrapper {
     private ThreadLocal<Connection> threadLocalConnection = new ThreadLocal<>();
 
     private ThreadLocal<Boolean> threadLocalIsInActiveTransaction = new ThreadLocal<>();
+    // whether connection of the thread was opened by a read only execution
+    private ThreadLocal<Boolean> threadLocalIsReadOnly = new ThreadLocal<>();
     private ThreadLocal<Boolean> threadLocalPreviousAutoCommit = new ThreadLocal<>();
 
+    // retry of outermost transactions, disabled if null
+    private volatile RetryPolicy retryPolicy;
+
+    // executor of async executions, default executor is used if not given
+    private volatile Executor executor;
+
+    // prepared statement cache of each opened connection, disabled by default
+    private volatile int statementCacheSize = 0;
+    private final CacheStats statementCacheStats = new CacheStats();
+
+    // result cache of Query.cacheFor(), disabled by default
+    private volatile QueryResultCache resultCache;
+    // tables written in current transaction, invalidated again when it ends
+    private ThreadLocal<Set<String>> threadLocalWrittenTables = new ThreadLocal<>();
+
+    // connections opened by wrappers with result cache, so Query.connect(connection) finds the cache
+    private static final ConcurrentHashMap<Connection, DatabaseWrapper> OPENED_CONNECTIONS = new ConcurrentHashMap<>();
+
     public DatabaseWrapper(DataSource ds) {
         if (ds == null) {
             throw new QueryException("data source is required");
@@ -29,11 +58,161 @@ public class DatabaseWrapper {
         this.dataSource = ds;
     }
 
+    /**
+     * enable prepared statement cache on connections opened by <code>execute</code> and <code>transaction</code>.
+     * <br>
+     * Each connection keeps at most <code>size</code> statements, which are closed together with the connection.
+     * 0 disables the cache, it is the default.
+     *
+     * @param size
+     */
+    public void setStatementCacheSize(int size) {
+        if (size < 0) {
+            throw new QueryException("statement cache size must not be negative");
+        }
+        this.statementCacheSize = size;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * hit, miss and eviction counters of prepared statement caches of all connections
+     *
+     * @return
+     */
+    public CacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * enable result cache of queries marked by <code>Query.cacheFor()</code>, bounded by estimated bytes of rows.
+     * <br>
+     * Writes by <code>execute</code>, <code>executeUpdate</code> and batch actions of Query objects using connections
+     * of this wrapper invalidate cached results of the written tables. 0 disables the cache, it is the default.
+     *
+     * @param maxBytes
+     */
+    public void setResultCacheSize(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new QueryException("result cache size must not be negative");
+        }
+        this.resultCache = maxBytes == 0 ? null : new QueryResultCache(maxBytes);
+    }
+
+    /**
+     * @return null if result cache is disabled
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * wrapper which opened the connection, only tracked while result cache is enabled
+     *
+     * @param connection
+     * @return null if not found
+     */
+    static DatabaseWrapper of(Connection connection) {
+        if (connection == null || OPENED_CONNECTIONS.isEmpty()) return null;
+        return OPENED_CONNECTIONS.get(connection);
+    }
+
+    /**
+     * invalidate cached results of written tables, again when current transaction ends
+     *
+     * @param tables null if unknown, all results are invalidated
+     */
+    void tablesWritten(Collection<String> tables) {
+        QueryResultCache cache = resultCache;
+        if (cache == null) return;
+
+        cache.invalidate(tables);
+
+        // results read by other threads before commit are stale after it
+        if (Boolean.TRUE.equals(threadLocalIsInActiveTransaction.get())) {
+            Set<String> written = threadLocalWrittenTables.get();
+            if (written == null) {
+                written = new HashSet<>();
+                threadLocalWrittenTables.set(written);
+            }
+            if (tables == null) {
+                written.add(null);
+            } else {
+                written.addAll(tables);
+            }
+        }
+    }
+
+    private void invalidateWrittenTables() {
+        Set<String> written = threadLocalWrittenTables.get();
+        if (written == null) return;
+        threadLocalWrittenTables.remove();
+
+        QueryResultCache cache = resultCache;
+        if (cache == null) return;
+        cache.invalidate(written.contains(null) ? null : written);
+    }
+
+    /**
+     * executor used by <code>executeAsync</code> and <code>transactionAsync</code>,
+     * {@link QueryExecutors#defaultExecutor()} if not given
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * retry outermost transactions failed by transient errors, null disables it, it is the default. <br>
+     * The execution of a retried transaction runs again, so it must not have effects outside the database.
+     *
+     * @param retryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public Executor getExecutor() {
+        Executor current = executor;
+        return current != null ? current : QueryExecutors.defaultExecutor();
+    }
+
     public <T> T execute(IDatabaseExecution<T> execution) {
+        return execute(execution, false);
+    }
+
+    /**
+     * run execution which only reads. <br>
+     * A routing wrapper may run it on a replica, so writes are refused within it,
+     * including <code>execute</code> and <code>transaction</code> nested in it.
+     *
+     * @param execution
+     * @param <T>
+     * @return
+     */
+    public <T> T executeReadOnly(IDatabaseExecution<T> execution) {
+        return execute(execution, true);
+    }
+
+    public void executeReadOnly(IDatabaseExecutionVoid execution) {
+        this.executeReadOnly(connection -> {
+            execution.execute(connection);
+            return null;
+        });
+    }
+
+    private <T> T execute(IDatabaseExecution<T> execution, boolean readOnly) {
         boolean isLocalOpenedConnection = false;
 
         try {
-            isLocalOpenedConnection = openConnection();
+            isLocalOpenedConnection = openConnection(readOnly);
 
             T result = execution.execute(threadLocalConnection.get());
             return result;
@@ -51,13 +230,43 @@ public class DatabaseWrapper {
         }
     }
 
+    /**
+     * run execution in a transaction, it is committed if the execution succeeds, otherwise rolled back. <br>
+     * Nested in another transaction, it runs within a savepoint, so a failure only rolls back the nested scope.
+     * Without savepoint support of the driver, it joins the outer transaction, and a failure rolls back all of it.
+     * <br>
+     * Only the outermost transaction is retried on transient errors, if a retry policy is set. A nested scope is
+     * never retried on its own, its failure reaches the outermost transaction which runs again as a whole.
+     *
+     * @param execution
+     * @param <T>
+     * @return
+     */
     public <T> T transaction(IDatabaseExecution<T> execution) {
+        if (Boolean.TRUE.equals(threadLocalIsInActiveTransaction.get())) {
+            return nestedTransaction(execution);
+        }
+
+        RetryPolicy policy = retryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return outermostTransaction(execution);
+            } catch (RuntimeException e) {
+                if (policy == null || !policy.canRetry(e, attempt)) {
+                    throw e;
+                }
+                backoff(policy, attempt, e);
+            }
+        }
+    }
+
+    private <T> T outermostTransaction(IDatabaseExecution<T> execution) {
         boolean isLocalOpenedConnection = false;
-        boolean canCommit;
+        boolean canCommit = false;
 
         try {
             // open connection and transaction
-            isLocalOpenedConnection = openConnection();
+            isLocalOpenedConnection = openConnection(false);
             canCommit = openTransaction(threadLocalConnection.get());
 
             T result = execution.execute(threadLocalConnection.get());
@@ -80,6 +289,10 @@ public class DatabaseWrapper {
         }
         // finally close the connection
         finally {
+            // errors are not caught above, the transaction must not outlive its connection
+            if (canCommit && Boolean.TRUE.equals(threadLocalIsInActiveTransaction.get())) {
+                rollback(threadLocalConnection.get());
+            }
 
             if (isLocalOpenedConnection) {
                 closeConnection();
@@ -87,6 +300,91 @@ public class DatabaseWrapper {
         }
     }
 
+    private <T> T nestedTransaction(IDatabaseExecution<T> execution) {
+        Connection connection = threadLocalConnection.get();
+        Savepoint savepoint = setSavepoint(connection);
+        if (savepoint == null) {
+            return joinedTransaction(connection, execution);
+        }
+
+        try {
+            T result = execution.execute(connection);
+            releaseSavepoint(connection, savepoint);
+            return result;
+        } catch (SQLException sqlExp) {
+            rollback(connection, savepoint);
+            throw new QueryException("DatabaseWrapper execute failed", sqlExp);
+        } catch (RuntimeException | Error e) {
+            rollback(connection, savepoint);
+            throw e;
+        }
+    }
+
+    /**
+     * scope nested in the outer transaction without savepoint, as there is no partial rollback it rolls back all
+     */
+    private <T> T joinedTransaction(Connection connection, IDatabaseExecution<T> execution) {
+        try {
+            return execution.execute(connection);
+        } catch (SQLException sqlExp) {
+            rollback(connection);
+            throw new QueryException("DatabaseWrapper execute failed", sqlExp);
+        } catch (RuntimeException | Error e) {
+            rollback(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * @param connection
+     * @return null if savepoints are not supported by the driver
+     */
+    private static Savepoint setSavepoint(Connection connection) {
+        try {
+            if (!connection.getMetaData().supportsSavepoints()) {
+                return null;
+            }
+            return connection.setSavepoint();
+        } catch (SQLFeatureNotSupportedException e) {
+            return null;
+        } catch (SQLException e) {
+            throw new QueryException("savepoint failed", e);
+        }
+    }
+
+    private static void backoff(RetryPolicy policy, int attempt, RuntimeException error) {
+        long millis = policy.backoffMillis(attempt);
+        if (millis == 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error;
+        }
+    }
+
+    /**
+     * run <code>execute</code> on the executor, connection is opened and closed on the executor thread
+     *
+     * @param execution
+     * @param <T>
+     * @return
+     */
+    public <T> CompletableFuture<T> executeAsync(IDatabaseExecution<T> execution) {
+        return CompletableFuture.supplyAsync(() -> execute(execution), getExecutor());
+    }
+
+    /**
+     * run <code>transaction</code> on the executor, connection is opened and closed on the executor thread
+     *
+     * @param execution
+     * @param <T>
+     * @return
+     */
+    public <T> CompletableFuture<T> transactionAsync(IDatabaseExecution<T> execution) {
+        return CompletableFuture.supplyAsync(() -> transaction(execution), getExecutor());
+    }
+
     public void execute(IDatabaseExecutionVoid execution) {
         this.execute(connection -> {
             execution.execute(connection);
@@ -109,31 +407,68 @@ public class DatabaseWrapper {
      * @return
      * @throws SQLException
      */
-    private boolean openConnection() throws SQLException {
+    private boolean openConnection(boolean readOnly) throws SQLException {
         if (threadLocalConnection.get() == null
                 || threadLocalConnection.get().isClosed()
         ) {
-            threadLocalConnection.set(dataSource.getConnection());
+            Connection connection = getConnection(readOnly);
+            threadLocalIsReadOnly.set(readOnly);
+            if (statementCacheSize > 0) {
+                connection = StatementCachingConnection.wrap(connection, statementCacheSize, statementCacheStats);
+            }
+            threadLocalConnection.set(connection);
+            if (resultCache != null) {
+                OPENED_CONNECTIONS.put(connection, this);
+            }
             return true;
         }
 
+        if (!readOnly && Boolean.TRUE.equals(threadLocalIsReadOnly.get())) {
+            throw new QueryException("can not write in read only execution");
+        }
+
         return false;
     }
 
+    /**
+     * get a new connection from data source
+     *
+     * @param readOnly whether it is opened by a read only execution
+     * @return
+     * @throws SQLException
+     */
+    protected Connection getConnection(boolean readOnly) throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * close connection got by <code>getConnection()</code>
+     *
+     * @param connection
+     * @param readOnly   whether it was opened by a read only execution
+     * @throws SQLException
+     */
+    protected void releaseConnection(Connection connection, boolean readOnly) throws SQLException {
+        connection.close();
+    }
+
 
     private boolean closeConnection() {
         if (threadLocalConnection.get() == null) {
             throw new QueryException("connection is null");
         }
 
+        OPENED_CONNECTIONS.remove(threadLocalConnection.get());
+
         try {
-            threadLocalConnection.get().close();
+            releaseConnection(threadLocalConnection.get(), Boolean.TRUE.equals(threadLocalIsReadOnly.get()));
         } catch (SQLException e) {
             throw new QueryException("connection close failed", e);
+        } finally {
+            // clear connection
+            threadLocalConnection.set(null);
+            threadLocalIsReadOnly.remove();
         }
-
-        // clear connection
-        threadLocalConnection.set(null);
         return true;
     }
 
@@ -168,15 +503,41 @@ public class DatabaseWrapper {
         connection.commit();
 
         threadLocalIsInActiveTransaction.set(Boolean.FALSE);
+        invalidateWrittenTables();
 
         // reset auto commit
         connection.setAutoCommit(threadLocalPreviousAutoCommit.get());
     }
 
     private void rollback(Connection connection) {
+        if (connection == null) return;
+
+        boolean wasActive = Boolean.TRUE.equals(threadLocalIsInActiveTransaction.get());
         try {
             connection.rollback();
+        } catch (SQLException e) {
+            // ignore this function because more important exception shall be thrown
+            // from parent method
+            e.printStackTrace();
+        } finally {
             threadLocalIsInActiveTransaction.set(Boolean.FALSE);
+            invalidateWrittenTables();
+        }
+
+        // reset auto commit, a retried transaction opens on the same connection if it is not opened locally
+        if (wasActive && threadLocalPreviousAutoCommit.get() != null) {
+            try {
+                connection.setAutoCommit(threadLocalPreviousAutoCommit.get());
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void rollback(Connection connection, Savepoint savepoint) {
+        try {
+            // the transaction goes on, written tables are invalidated when it ends
+            connection.rollback(savepoint);
         } catch (SQLException e) {
             // ignore this function because more important exception shall be thrown
             // from parent method
@@ -184,4 +545,14 @@ public class DatabaseWrapper {
         }
     }
 
+    private void releaseSavepoint(Connection connection, Savepoint savepoint) {
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLFeatureNotSupportedException e) {
+            // e.g. Oracle, the savepoint is released by the end of the transaction
+        } catch (SQLException e) {
+            throw new QueryException("savepoint release failed", e);
+        }
+    }
+
 }
@@ -0,0 +1,63 @@
+package com.ce.query;
+
+import com.ce.query.grammar.IGrammar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Picks fetch size of a result set from a memory budget. <br>
+ * The first guess is based on column count, it is corrected once by the width of the first sampled rows.
+ */
+class FetchSizeTuner {
+
+    static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+    static final int ESTIMATED_COLUMN_BYTES = 32;
+    static final int MIN_FETCH_SIZE = 10;
+    static final int SAMPLE_ROWS = 64;
+
+    private final long memoryBudget;
+    private final int maxFetchSize;
+    private int sampled = 0;
+    private long sampledBytes = 0;
+    private boolean tuned = false;
+
+    FetchSizeTuner(long memoryBudget, IGrammar grammar) {
+        this.memoryBudget = memoryBudget;
+        this.maxFetchSize = Math.max(MIN_FETCH_SIZE, grammar.getMaxFetchSize());
+    }
+
+    /**
+     * fetch size guessed from column count
+     *
+     * @param columnCount
+     * @return
+     */
+    int initial(int columnCount) {
+        return fit((long) Math.max(1, columnCount) * ESTIMATED_COLUMN_BYTES);
+    }
+
+    /**
+     * sample the row, once enough rows are sampled correct fetch size of the result set
+     *
+     * @param row
+     * @param rs
+     * @throws SQLException
+     */
+    void sample(Row row, ResultSet rs) throws SQLException {
+        if (tuned) return;
+
+        sampledBytes += RowSizeEstimator.estimate(row);
+        sampled++;
+
+        if (sampled >= SAMPLE_ROWS) {
+            tuned = true;
+            rs.setFetchSize(fit(sampledBytes / sampled));
+        }
+    }
+
+    private int fit(long rowBytes) {
+        long size = memoryBudget / Math.max(1, rowBytes);
+        return (int) Math.max(MIN_FETCH_SIZE, Math.min(maxFetchSize, size));
+    }
+}
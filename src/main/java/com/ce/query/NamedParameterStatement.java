@@ -1,7 +1,13 @@
 package com.ce.query;
 
+import com.ce.query.cache.CacheStats;
+import com.ce.query.cache.LruCache;
+
 import java.sql.*;
-import java.util.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author adam_crume
@@ -9,6 +15,16 @@ import java.util.*;
 public class NamedParameterStatement {
     public static final int[] EMPTY_INDEX = new int[0];
 
+    /**
+     * Default number of parsed queries kept in the shared parse cache.
+     */
+    public static final int DEFAULT_PARSE_CACHE_SIZE = 512;
+
+    /**
+     * Parsed queries shared by all statements, keyed by the original query text.
+     */
+    private static final LruCache<String, ParsedSql> PARSE_CACHE = new LruCache<>(DEFAULT_PARSE_CACHE_SIZE);
+
     /**
      * The statement this object is wrapping.
      */
@@ -17,7 +33,12 @@ public class NamedParameterStatement {
     /**
      * Maps parameter names to arrays of ints which are the parameter indices.
      */
-    private final Map indexMap;
+    private final Map<String, int[]> indexMap;
+
+    /**
+     * The parsed query, its binding plan is shared by all statements of the query.
+     */
+    private final ParsedSql parsed;
 
 
     /**
@@ -29,10 +50,91 @@ public class NamedParameterStatement {
      * @throws SQLException if the statement could not be created
      */
     public NamedParameterStatement(Connection connection, String query) throws SQLException {
-        indexMap = new HashMap();
-        String parsedQuery = parse(query, indexMap);
-        statement = connection.prepareStatement(parsedQuery);
+        this(connection, parse(query));
+    }
 
+
+    /**
+     * Creates a NamedParameterStatement from an already parsed query.
+     *
+     * @param connection the database connection
+     * @param parsed     the parsed query
+     * @throws SQLException if the statement could not be created
+     */
+    NamedParameterStatement(Connection connection, ParsedSql parsed) throws SQLException {
+        this.parsed = parsed;
+        indexMap = parsed.indexMap;
+        statement = connection.prepareStatement(parsed.sql);
+    }
+
+
+    /**
+     * Creates a NamedParameterStatement with given result set type and concurrency.  Wraps a call to
+     * c.{@link Connection#prepareStatement(String, int, int) prepareStatement}.
+     *
+     * @param connection           the database connection
+     * @param query                the parameterized query
+     * @param resultSetType        result set type
+     * @param resultSetConcurrency result set concurrency
+     * @throws SQLException if the statement could not be created
+     */
+    public NamedParameterStatement(Connection connection, String query, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        parsed = parse(query);
+        indexMap = parsed.indexMap;
+        statement = connection.prepareStatement(parsed.sql, resultSetType, resultSetConcurrency);
+    }
+
+
+    /**
+     * Returns the parsed form of a query, from the shared parse cache if the query was parsed before.
+     *
+     * @param query query to parse
+     * @return the parsed query
+     */
+    static ParsedSql parse(String query) {
+        // concurrent misses of one query wait for a single parse
+        return PARSE_CACHE.computeIfAbsent(query, NamedParameterStatement::parseUncached);
+    }
+
+    private static ParsedSql parseUncached(String query) {
+        Map<String, int[]> paramMap = new HashMap<>();
+        String parsedQuery = parse(query, paramMap);
+
+        int parameterCount = 0;
+        for (int[] indexes : paramMap.values()) {
+            parameterCount += indexes.length;
+        }
+
+        return new ParsedSql(parsedQuery, Collections.unmodifiableMap(paramMap), parameterCount);
+    }
+
+
+    /**
+     * Returns the hit, miss and eviction counters of the shared parse cache.
+     *
+     * @return parse cache stats
+     */
+    public static CacheStats getParseCacheStats() {
+        return PARSE_CACHE.getStats();
+    }
+
+
+    /**
+     * Changes the number of parsed queries kept in the shared parse cache, 0 disables caching.
+     *
+     * @param size max number of parsed queries
+     */
+    public static void setParseCacheSize(int size) {
+        PARSE_CACHE.setMaxSize(size);
+    }
+
+
+    /**
+     * Removes all parsed queries from the shared parse cache.
+     */
+    public static void clearParseCache() {
+        PARSE_CACHE.invalidateAll();
     }
 
 
@@ -45,14 +147,15 @@ public class NamedParameterStatement {
      * @param paramMap map to hold parameter-index mappings
      * @return the parsed query
      */
-    static final String parse(String query, Map paramMap) {
+    static final String parse(String query, Map<String, int[]> paramMap) {
         // I was originally using regular expressions, but they didn't work well for ignoring
         // parameter-like strings inside quotes.
         int length = query.length();
-        StringBuffer parsedQuery = new StringBuffer(length);
+        StringBuilder parsedQuery = new StringBuilder(length);
         boolean inSingleQuote = false;
         boolean inDoubleQuote = false;
         int index = 1;
+        int start = 0;
 
         for (int i = 0; i < length; i++) {
             char c = query.charAt(i);
@@ -76,34 +179,26 @@ public class NamedParameterStatement {
                         j++;
                     }
                     String name = query.substring(i + 1, j);
-                    c = '?'; // replace the parameter with a question mark
-                    i += name.length(); // skip past the end if the parameter
 
-                    List indexList = (List) paramMap.get(name);
-                    if (indexList == null) {
-                        indexList = new LinkedList();
-                        paramMap.put(name, indexList);
+                    // copy the text before the parameter and replace the parameter with a question mark
+                    parsedQuery.append(query, start, i).append('?');
+                    start = j;
+                    i = j - 1; // skip past the end if the parameter
+
+                    int[] indexes = paramMap.get(name);
+                    if (indexes == null) {
+                        indexes = new int[]{index};
+                    } else {
+                        indexes = Arrays.copyOf(indexes, indexes.length + 1);
+                        indexes[indexes.length - 1] = index;
                     }
-                    indexList.add(new Integer(index));
+                    paramMap.put(name, indexes);
 
                     index++;
                 }
             }
-            parsedQuery.append(c);
-        }
-
-        // replace the lists of Integer objects with arrays of ints
-        for (Iterator itr = paramMap.entrySet().iterator(); itr.hasNext(); ) {
-            Map.Entry entry = (Map.Entry) itr.next();
-            List list = (List) entry.getValue();
-            int[] indexes = new int[list.size()];
-            int i = 0;
-            for (Iterator itr2 = list.iterator(); itr2.hasNext(); ) {
-                Integer x = (Integer) itr2.next();
-                indexes[i++] = x.intValue();
-            }
-            entry.setValue(indexes);
         }
+        parsedQuery.append(query, start, length);
 
         return parsedQuery.toString();
     }
@@ -117,7 +212,7 @@ public class NamedParameterStatement {
      * @throws IllegalArgumentException if the parameter does not exist
      */
     private int[] getIndexes(String name) {
-        int[] indexes = (int[]) indexMap.get(name);
+        int[] indexes = indexMap.get(name);
         if (indexes == null) {
             return EMPTY_INDEX;
         }
@@ -142,6 +237,55 @@ public class NamedParameterStatement {
     }
 
 
+    /**
+     * Binds every parameter of the query from the params by the binding plan, with typed setters.
+     *
+     * @param params        parameter values by name, other keys are ignored
+     * @param missingAsNull whether parameters without a key in params are set to null, or left unset
+     * @throws SQLException if an error occurred
+     */
+    void bind(Map<String, ?> params, boolean missingAsNull) throws SQLException {
+        String[] names = parsed.slotNames;
+        for (int slot = 0; slot < names.length; slot++) {
+            Object value = params.get(names[slot]);
+            if (value == null && !missingAsNull && !params.containsKey(names[slot])) continue;
+
+            int[] indexes = parsed.slotIndexes[slot];
+            for (int i = 0; i < indexes.length; i++) {
+                ParameterBinder.bind(statement, indexes[i], value);
+            }
+        }
+    }
+
+
+    /**
+     * Binds one value for each parameter position with typed setters.
+     *
+     * @param values parameter values, index 0 is the first <code>?</code>
+     * @throws SQLException if an error occurred
+     */
+    void bind(Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            ParameterBinder.bind(statement, i + 1, values[i]);
+        }
+    }
+
+
+    /**
+     * Binds a parameter by name with a typed setter, unknown names are ignored like {@link #setObject}.
+     *
+     * @param name  parameter name
+     * @param value parameter value
+     * @throws SQLException if an error occurred
+     */
+    void bind(String name, Object value) throws SQLException {
+        int[] indexes = getIndexes(name);
+        for (int i = 0; i < indexes.length; i++) {
+            ParameterBinder.bind(statement, indexes[i], value);
+        }
+    }
+
+
     /**
      * Sets a parameter.
      *
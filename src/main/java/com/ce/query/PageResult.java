@@ -0,0 +1,41 @@
+package com.ce.query;
+
+import java.util.List;
+
+/**
+ * One page of rows with the total count of the query, created by {@link Query#paginateWithTotal(int, int)}.
+ */
+public final class PageResult {
+
+    private final List<Row> rows;
+    private final long total;
+    private final boolean exact;
+
+    PageResult(List<Row> rows, long total, boolean exact) {
+        this.rows = rows;
+        this.total = total;
+        this.exact = exact;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * total count of rows, or count cap + 1 if the count is capped and there are more rows
+     *
+     * @return
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * false if the count reached the cap, the total is then "more than cap"
+     *
+     * @return
+     */
+    public boolean isTotalExact() {
+        return exact;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Rows of several partitions produced concurrently into one bounded queue, and consumed as one iterator. <br>
+ * Producers wait while the queue is full, so a slow consumer holds back the scan instead of filling memory.
+ * Closing stops producers at their next row.
+ */
+final class ParallelScan implements Iterator<Row>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final int partitions;
+    private int ended = 0;
+    private Row next;
+    private volatile boolean closed = false;
+    private volatile Throwable failure;
+
+    ParallelScan(int partitions, int capacity) {
+        this.partitions = partitions;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * run one partition on the calling thread, body hands rows to the sink until it returns false
+     *
+     * @param body
+     */
+    void produce(Consumer<Predicate<Row>> body) {
+        try {
+            body.accept(this::offer);
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            offer(END);
+        }
+    }
+
+    private boolean offer(Object value) {
+        try {
+            while (!closed) {
+                if (queue.offer(value, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (failure != null) {
+                Throwable cause = failure;
+                close();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new QueryException("parallel scan failed", cause);
+            }
+            if (closed || ended == partitions) {
+                return false;
+            }
+
+            Object value;
+            try {
+                value = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new QueryException("parallel scan interrupted", e);
+            }
+
+            if (value == END) {
+                ended++;
+            } else {
+                next = (Row) value;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * stop producers, they release their connections at next row
+     */
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+        queue.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package com.ce.query;
+
+import com.ce.query.converter.DataConverterManager;
+import com.ce.query.converter.IDataConverter;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Typed setters of parameter values, chosen once per value class. <br>
+ * Common JDBC types are bound by their own setter, so the driver does not infer the type from
+ * <code>setObject</code>. Values of other classes are bound by the raw value of their registered
+ * <code>IDataConverter</code>, or by <code>setObject</code> if there is none.
+ * Null is bound by <code>setNull</code> with <code>Types.NULL</code>, so the database infers its type from the statement.
+ */
+final class ParameterBinder {
+
+    private ParameterBinder() {
+    }
+
+    private interface Setter {
+        void set(PreparedStatement statement, int index, Object value) throws SQLException;
+    }
+
+    private static final ClassValue<Setter> SETTERS = new ClassValue<Setter>() {
+        @Override
+        protected Setter computeValue(Class<?> type) {
+            Setter setter = _typedSetter(type);
+            return setter != null ? setter : ParameterBinder::_convertAndSet;
+        }
+    };
+
+    /**
+     * bind value at the 1 based index
+     *
+     * @param statement
+     * @param index
+     * @param value
+     * @throws SQLException
+     */
+    static void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+            return;
+        }
+
+        SETTERS.get(value.getClass()).set(statement, index, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void _convertAndSet(PreparedStatement statement, int index, Object value) throws SQLException {
+        IDataConverter<Object> converter = (IDataConverter<Object>) DataConverterManager.INSTANCE.find(value.getClass());
+        Object raw = converter == null ? value : converter.toRaw(value);
+
+        Setter setter = raw == null ? null : _typedSetter(raw.getClass());
+        if (setter != null) {
+            setter.set(statement, index, raw);
+        } else if (raw == null) {
+            statement.setNull(index, Types.NULL);
+        } else {
+            statement.setObject(index, raw);
+        }
+    }
+
+    private static Setter _typedSetter(Class<?> type) {
+        if (type == String.class) return (s, i, v) -> s.setString(i, (String) v);
+        if (type == Integer.class) return (s, i, v) -> s.setInt(i, (Integer) v);
+        if (type == Long.class) return (s, i, v) -> s.setLong(i, (Long) v);
+        if (type == Short.class) return (s, i, v) -> s.setShort(i, (Short) v);
+        if (type == Byte.class) return (s, i, v) -> s.setByte(i, (Byte) v);
+        if (type == Double.class) return (s, i, v) -> s.setDouble(i, (Double) v);
+        if (type == Float.class) return (s, i, v) -> s.setFloat(i, (Float) v);
+        if (type == Boolean.class) return (s, i, v) -> s.setBoolean(i, (Boolean) v);
+        if (type == BigDecimal.class) return (s, i, v) -> s.setBigDecimal(i, (BigDecimal) v);
+        if (type == Timestamp.class) return (s, i, v) -> s.setTimestamp(i, (Timestamp) v);
+        if (type == java.sql.Date.class) return (s, i, v) -> s.setDate(i, (java.sql.Date) v);
+        if (type == Time.class) return (s, i, v) -> s.setTime(i, (Time) v);
+        if (type == java.util.Date.class) return (s, i, v) -> s.setTimestamp(i, new Timestamp(((java.util.Date) v).getTime()));
+        if (type == byte[].class) return (s, i, v) -> s.setBytes(i, (byte[]) v);
+        if (type == ArrayParameter.class) return (s, i, v) -> s.setArray(i, ((ArrayParameter) v).create(s.getConnection()));
+        return null;
+    }
+}
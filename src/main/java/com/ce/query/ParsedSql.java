@@ -0,0 +1,60 @@
+package com.ce.query;
+
+import java.util.Map;
+
+/**
+ * result of parsing a query with named parameters, immutable and shared between statements. <br>
+ * It carries the binding plan of the query: the distinct parameter names as value slots,
+ * and the positions of each slot.
+ */
+final class ParsedSql {
+
+    /**
+     * query with every named parameter replaced by <code>?</code>
+     */
+    final String sql;
+
+    /**
+     * parameter name to its 1 based parameter indexes, must not be modified
+     */
+    final Map<String, int[]> indexMap;
+
+    /**
+     * number of <code>?</code> in sql
+     */
+    final int parameterCount;
+
+    /**
+     * distinct parameter names, one value slot each
+     */
+    final String[] slotNames;
+
+    /**
+     * 1 based parameter indexes of each slot
+     */
+    final int[][] slotIndexes;
+
+    /**
+     * parameter name of each position, index 0 is the first <code>?</code>
+     */
+    final String[] positionNames;
+
+    ParsedSql(String sql, Map<String, int[]> indexMap, int parameterCount) {
+        this.sql = sql;
+        this.indexMap = indexMap;
+        this.parameterCount = parameterCount;
+        this.slotNames = new String[indexMap.size()];
+        this.slotIndexes = new int[indexMap.size()][];
+        this.positionNames = new String[parameterCount];
+
+        int slot = 0;
+        for (Map.Entry<String, int[]> entry : indexMap.entrySet()) {
+            slotNames[slot] = entry.getKey();
+            slotIndexes[slot] = entry.getValue();
+            for (int index : entry.getValue()) {
+                positionNames[index - 1] = entry.getKey();
+            }
+            slot++;
+        }
+    }
+}
@@ -4,28 +4,56 @@ import com.ce.query.contract.IRowToEntityHandler;
 import com.ce.query.exception.QueryException;
 import com.ce.query.grammar.GrammarManager;
 import com.ce.query.grammar.IGrammar;
+import com.ce.query.grammar.InListStrategy;
+import com.ce.query.listener.QueryEvent;
+import com.ce.query.listener.QueryListeners;
+import com.ce.query.listener.QueryPhase;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Query {
 
     private final String WHERE_LIKE_SUFFIX = "__whereLike";
+    private static final String TOTAL_COUNT = "total__count";
+    // rows waiting for the consumer of parallelStream
+    private static final int PARALLEL_BUFFER_SIZE = 1024;
+    // rows of one multi-row insert statement, if the bind parameter limit allows
+    private static final int DEFAULT_ROWS_PER_INSERT = 512;
+    private static final String IN_TABLE_PREFIX = "query_in__";
+    private static final String WHERE_PARAM = "where";
     private String table;
     private String select;
-    private List<String> whereRawList = new ArrayList<String>();
-    private List<String> whereList = new ArrayList<String>();
-    private Map<String, Object[]> whereInList = new HashMap<String, Object[]>();
-    private List<String> whereLikeList = new ArrayList<String>();
+    // where criteria in the order they are added, joined by and
+    private Where where = new Where(false);
+    // generated params of where criteria in the last build
+    private int whereParamCount = 0;
+    // large whereIn lists of the last build, staged into temporary tables when executed
+    private List<StagedInList> stagedInLists = new ArrayList<>();
     private int skip = 0;
     private int take = 0;
     private String orderBy;
@@ -36,24 +64,62 @@ public class Query {
     private Map<String, Object> params = new HashMap<>();
     private Connection connection;
     private IGrammar grammar;
+    private long batchFlushTargetMillis = 0;
+    private int fetchSize = 0;
+    private long fetchMemoryBudget = 0;
+    private int resultSetType = 0;
+    private int resultSetConcurrency = 0;
+    private DatabaseWrapper wrapper;
+    private Executor executor;
+    private String[] seekColumns;
+    private boolean[] seekDescending;
+    private Object[] seekValues;
+    private int seekPageSize = 0;
+    private long cacheTtlNanos = 0;
+    private QueryTimer timer;
 
     private Query(Connection connection) {
         this.connection = connection;
         try {
             String databaseProductName = connection.getMetaData().getDatabaseProductName();
             this.grammar = GrammarManager.INSTANCE.get(databaseProductName);
-            if (this.grammar == null) {
-                this.grammar = GrammarManager.INSTANCE.get(GrammarManager.DEFAULT);
-            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        // grammar is always resolved, unknown databases use the default one
+        if (this.grammar == null) {
+            this.grammar = GrammarManager.INSTANCE.get(GrammarManager.DEFAULT);
+        }
+    }
+
+    private Query(DatabaseWrapper wrapper) {
+        this.wrapper = wrapper;
+        // toSql() of a detached Query renders by the default grammar, actions render on the connection again
+        this.grammar = GrammarManager.INSTANCE.get(GrammarManager.DEFAULT);
     }
 
     public static Query connect(Connection connection) {
         return new Query(connection);
     }
 
+    /**
+     * create a Query object without connection, each action borrows a connection from the wrapper. <br>
+     * Async actions open and close their connection on the executor, so they can run concurrently.
+     * <code>
+     * CompletableFuture<List<Row>> peoples = Query.with(databaseWrapper).table("people").allAsync();
+     * CompletableFuture<Integer> count = Query.with(databaseWrapper).table("student").countAsync();
+     * </code>
+     *
+     * @param wrapper
+     * @return
+     */
+    public static Query with(DatabaseWrapper wrapper) {
+        if (wrapper == null) {
+            throw new QueryException("database wrapper is required");
+        }
+        return new Query(wrapper);
+    }
+
     /**
      * set table of Query object
      *
@@ -148,7 +214,7 @@ public class Query {
      * @return
      */
     public Query where(String where) {
-        this.whereRawList.add(where);
+        this.where.where(where);
         return this;
     }
 
@@ -166,7 +232,7 @@ public class Query {
      * @return
      */
     public Query where(String token, Object value) {
-        this.whereList.add(token);
+        this.where.whereNamed(token);
         this.param(token, value);
         return this;
     }
@@ -185,7 +251,7 @@ public class Query {
         if (token == null || "".equals(token.trim()))
             return this;
 
-        this.whereInList.put(token, list);
+        this.where.putIn(token, list);
         return this;
     }
 
@@ -204,12 +270,68 @@ public class Query {
             return this;
 
         if (value != null && value.trim().length() > 0) {
-            this.whereLikeList.add(token);
+            this.where.whereLike(token, token + WHERE_LIKE_SUFFIX);
             this.param(token + WHERE_LIKE_SUFFIX, "%" + value.toLowerCase() + "%");
         }
         return this;
     }
 
+    /**
+     * add comparison criteria, value is bound as generated param
+     * <code>
+     * query.where("age", ">=", 18);
+     * </code>
+     *
+     * @param column
+     * @param operator one of <code>=, &lt;&gt;, !=, &lt;, &lt;=, &gt;, &gt;=</code>
+     * @param value
+     * @return
+     */
+    public Query where(String column, String operator, Object value) {
+        this.where.where(column, operator, value);
+        return this;
+    }
+
+    /**
+     * add <code>column between from and to</code> criteria
+     *
+     * @param column
+     * @param from
+     * @param to
+     * @return
+     */
+    public Query whereBetween(String column, Object from, Object to) {
+        this.where.between(column, from, to);
+        return this;
+    }
+
+    public Query whereNull(String column) {
+        this.where.isNull(column);
+        return this;
+    }
+
+    public Query whereNotNull(String column) {
+        this.where.isNotNull(column);
+        return this;
+    }
+
+    /**
+     * add group of criteria joined by <code>or</code>, groups can be nested by <code>all()</code> and
+     * <code>any()</code> of {@link Where}
+     * <code>
+     * query.whereAny(any -> any
+     * .where("age", "<", 18)
+     * .all(all -> all.where("age", ">", 60).isNull("retired_at")));
+     * </code>
+     *
+     * @param group
+     * @return
+     */
+    public Query whereAny(Consumer<Where> group) {
+        this.where.any(group);
+        return this;
+    }
+
     /**
      * add paginate
      *
@@ -245,6 +367,67 @@ public class Query {
         return this;
     }
 
+    /**
+     * keyset pagination, select the page after the given last values instead of skipping rows. <br>
+     * Order columns are the ordering of the page, each may end with <code>asc</code> or <code>desc</code>.
+     * They replace <code>orderBy()</code> and <code>paginate()</code>, must be not null and unique together,
+     * e.g. end with the primary key.
+     * <code>
+     * List<Row> rows = Query.connect(connection)
+     * .table("people")
+     * .seekAfter(new String[]{"age desc", "id"}, new Object[]{30, 1024}, 20)
+     * .get();
+     * </code>
+     *
+     * @param orderColumns
+     * @param lastValues   values of the order columns of the last row, null or empty for the first page
+     * @param pageSize
+     * @return
+     */
+    public Query seekAfter(String[] orderColumns, Object[] lastValues, int pageSize) {
+        if (orderColumns == null || orderColumns.length == 0) {
+            throw new QueryException("order columns are required to seek");
+        }
+        if (lastValues != null && lastValues.length > 0 && lastValues.length != orderColumns.length) {
+            throw new QueryException(String.format("%s last values given for %s order columns",
+                    lastValues.length, orderColumns.length));
+        }
+        if (pageSize <= 0) {
+            throw new QueryException("page size must be positive");
+        }
+
+        this.seekColumns = new String[orderColumns.length];
+        this.seekDescending = new boolean[orderColumns.length];
+        for (int i = 0; i < orderColumns.length; i++) {
+            String column = orderColumns[i].trim();
+            String lower = column.toLowerCase();
+            if (lower.endsWith(" desc")) {
+                column = column.substring(0, column.length() - 5).trim();
+                seekDescending[i] = true;
+            } else if (lower.endsWith(" asc")) {
+                column = column.substring(0, column.length() - 4).trim();
+            }
+            seekColumns[i] = column;
+        }
+
+        this.seekValues = lastValues == null || lastValues.length == 0 ? null : lastValues.clone();
+        this.seekPageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * keyset pagination continued from the token of a previous <code>SeekPage</code>
+     *
+     * @param orderColumns same order columns as the previous page
+     * @param token        null or empty for the first page
+     * @param pageSize
+     * @return
+     */
+    public Query seekAfter(String[] orderColumns, String token, int pageSize) {
+        Object[] lastValues = token == null || token.isEmpty() ? null : SeekToken.decode(token);
+        return seekAfter(orderColumns, lastValues, pageSize);
+    }
+
     /**
      * add order by
      *
@@ -269,6 +452,107 @@ public class Query {
         return this;
     }
 
+    /**
+     * number of rows fetched from database per round trip, overrides the default of grammar
+     *
+     * @param fetchSize
+     * @return
+     */
+    public Query fetchSize(int fetchSize) {
+        if (fetchSize < 0)
+            throw new QueryException("fetch size must not be negative");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * pick fetch size by a memory budget of 4 MB, see {@link #adaptiveFetchSize(long)}
+     *
+     * @return
+     */
+    public Query adaptiveFetchSize() {
+        return adaptiveFetchSize(FetchSizeTuner.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * pick fetch size so one fetch takes about <code>memoryBudget</code> bytes. <br>
+     * First fetch size is guessed from column count, it is corrected by width of first rows,
+     * and never exceeds the max fetch size of grammar. Explicit <code>fetchSize()</code> takes precedence.
+     *
+     * @param memoryBudget bytes
+     * @return
+     */
+    public Query adaptiveFetchSize(long memoryBudget) {
+        if (memoryBudget <= 0)
+            throw new QueryException("memory budget must be positive");
+        this.fetchMemoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * hint result set to be forward only, rows are only read once
+     *
+     * @return
+     */
+    public Query forwardOnly() {
+        this.resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+        return this;
+    }
+
+    /**
+     * hint result set to be read only
+     *
+     * @return
+     */
+    public Query readOnly() {
+        this.resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+        return this;
+    }
+
+    /**
+     * cache results of this query in the result cache of the database wrapper for the given time. <br>
+     * It takes effect when the Query object is created by <code>Query.with()</code>, or connected to a connection
+     * opened by a wrapper with result cache enabled. Results are not cached inside a transaction.
+     * <code>
+     * List<Row> countries = Query.with(databaseWrapper)
+     * .table("country")
+     * .cacheFor(Duration.ofMinutes(10))
+     * .all();
+     * </code>
+     *
+     * @param ttl
+     * @return
+     */
+    public Query cacheFor(Duration ttl) {
+        this.cacheTtlNanos = ttl == null || ttl.isNegative() ? 0 : ttl.toNanos();
+        return this;
+    }
+
+    /**
+     * executor of async actions, default is the executor of database wrapper,
+     * or {@link QueryExecutors#defaultExecutor()}
+     *
+     * @param executor
+     * @return
+     */
+    public Query executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * let batch actions adapt the batch size to observed flush latency. <br>
+     * Batch size is halved while a flush is slower than the target, and doubled (up to 8 times the given size)
+     * while a flush takes less than half of it. 0 disables adaptation, it is the default.
+     *
+     * @param targetMillis
+     * @return
+     */
+    public Query adaptiveBatch(long targetMillis) {
+        this.batchFlushTargetMillis = targetMillis;
+        return this;
+    }
+
     /**
      * take a param with a key
      *
@@ -292,114 +576,218 @@ public class Query {
         return this;
     }
 
-    private void _buildJoin(StringBuffer buffer) {
-        // join
-        for (int i = 0; i < joins.size(); i++) {
-            buffer.append(joins.get(i));
+    /**
+     * render in list criteria by the strategy of grammar
+     *
+     * @param sql
+     * @param key
+     * @param value
+     */
+    void _renderIn(StringBuilder sql, String key, Object[] value) {
+        if (value == null || value.length == 0) {
+            sql.append(" false ");
+            return;
         }
-    }
 
-    private void _appendWhere(StringBuffer buffer) {
-        if (buffer.toString().contains(" where ")) {
-            buffer.append(" and ");
+        InListStrategy strategy = grammar.chooseInListStrategy(value.length);
+        String typeName = strategy == InListStrategy.EXPAND ? null : grammar.getElementTypeName(_firstNonNull(value));
+
+        if (typeName == null) {
+            _renderExpandedIn(sql, key, value);
+        } else if (strategy == InListStrategy.ARRAY) {
+            // generated name, so other lists of the column and user params are not overwritten
+            grammar.handleArrayIn(sql, key, _bindWhereParam(new ArrayParameter(typeName, value)));
         } else {
-            buffer.append(" where ");
+            // stable table name per position, so the sql is the same for every list size
+            String inTable = IN_TABLE_PREFIX + stagedInLists.size();
+            stagedInLists.add(new StagedInList(inTable, typeName, value));
+            sql.append(' ').append(key).append(" in ( select v from ").append(inTable).append(" ) ");
         }
     }
 
-    private void _buildWhereRaw(StringBuffer buffer) {
-        // where raw
-        for (int i = 0; i < whereRawList.size(); i++) {
-            String where = whereRawList.get(i);
-
-            _appendWhere(buffer);
-
-            buffer.append(where);
+    /**
+     * one named parameter per value, in OR'd blocks within the max IN list size of the database. <br>
+     * The last block is padded to a power of two by repeating its last value,
+     * so lists of similar size share the same sql and the statement cache of the driver.
+     *
+     * @param buffer
+     * @param key
+     * @param value
+     */
+    private void _renderExpandedIn(StringBuilder buffer, String key, Object[] value) {
+        int max = grammar.getMaxInListSize();
+        int block = Integer.highestOneBit(Math.max(max, 1));
+        int blocks = (value.length + block - 1) / block;
+        int last = value.length - (blocks - 1) * block;
+        int lastPadded = Integer.highestOneBit(last);
+        if (lastPadded < last) lastPadded <<= 1;
+        int padded = (blocks - 1) * block + lastPadded;
+
+        if (blocks > 1) buffer.append(" (");
+        for (int b = 0; b < blocks; b++) {
+            if (b > 0) buffer.append(" or");
+            buffer.append(" ").append(key).append(" in ( ");
+            int end = Math.min(padded, (b + 1) * block);
+            for (int i = b * block; i < end; i++) {
+                if (i > b * block) buffer.append(", ");
+                // names of the render counter, so several lists of one column do not share params
+                buffer.append(':').append(_bindWhereParam(value[Math.min(i, value.length - 1)]));
+            }
+            buffer.append(" )");
         }
+        if (blocks > 1) buffer.append(" )");
     }
 
-    private void _buildWhere(StringBuffer buffer) {
-        // where
-        for (int i = 0; i < whereList.size(); i++) {
-            String token = whereList.get(i);
-            _appendWhere(buffer);
-            buffer.append(String.format(" %s = %s ", token, ":" + token));
+    private static Object _firstNonNull(Object[] values) {
+        for (Object value : values) {
+            if (value != null) return value;
         }
+        return null;
     }
 
-    void _buildWhereIn(StringBuffer buffer) {
-        // where in
-        for (Entry<String, Object[]> entry : whereInList.entrySet()) {
+    /**
+     * create temporary tables of whereIn lists used by the sql
+     *
+     * @param sql
+     * @return tables to drop after the statement
+     * @throws SQLException
+     */
+    private List<StagedInList> _stageInLists(String sql) throws SQLException {
+        if (stagedInLists.isEmpty()) return Collections.emptyList();
+
+        List<StagedInList> staged = new ArrayList<>();
+        try {
+            for (StagedInList inList : stagedInLists) {
+                if (!sql.contains(inList.getTable())) continue;
+                inList.create(connection, grammar);
+                staged.add(inList);
+            }
+        } catch (SQLException | RuntimeException e) {
+            _dropInLists(staged);
+            throw e;
+        }
+        return staged;
+    }
 
-            String key = entry.getKey();
-            Object[] value = entry.getValue();
+    private void _dropInLists(List<StagedInList> staged) {
+        if (staged == null) return;
+        for (StagedInList inList : staged) {
+            inList.drop(connection);
+        }
+    }
 
-            _appendWhere(buffer);
+    /**
+     * name of a generated param of where criteria, bound to the value
+     *
+     * @param value
+     * @return
+     */
+    String _bindWhereParam(Object value) {
+        String name = SQLHelper.namedParameter(WHERE_PARAM, whereParamCount++);
+        param(name, value);
+        return name;
+    }
 
-            if (value != null && value.length > 0) {
-                String[] names = SQLHelper.generateArrayOfNamedParameters(key, value.length);
+    private String _selection() {
+        return select == null || "".equals(select.trim()) ? "*" : select;
+    }
 
-                buffer.append(String.format(" %s in ( %s )", key, SQLHelper.generateArrayOfNamedParameterString(key, value.length)));
+    /**
+     * render the sql in one pass, pagination is not included
+     *
+     * @param selection select part
+     * @param ordered   whether order by is included
+     * @return
+     */
+    private StringBuilder _buildSql(String selection, boolean ordered) {
+        return _buildSql(selection, ordered, true);
+    }
 
-                for (int i = 0; i < value.length; i++) {
-                    param(names[i], value[i]);
-                }
-            } else {
-                buffer.append(" false ");
-            }
-        }
+    /**
+     * @param selection select part
+     * @param ordered   whether order by is included
+     * @param grouped   whether group by is included
+     * @return
+     */
+    private StringBuilder _buildSql(String selection, boolean ordered, boolean grouped) {
+        StringBuilder sql = new StringBuilder(_estimateSqlLength(selection));
+        _renderSql(sql, selection, ordered, grouped);
+        return sql;
     }
 
-    private StringBuffer _buildSqlBase() {
+    private void _renderSql(StringBuilder sql, String selection, boolean ordered, boolean grouped) {
         if (table == null)
             throw new QueryException("table is required");
 
-        StringBuffer buffer = new StringBuffer();
-
-        _buildTable(buffer);
+        if (QueryListeners.isActive()) {
+            if (timer == null) timer = new QueryTimer(false);
+            timer.restart();
+        }
 
-        _buildJoin(buffer);
+        stagedInLists.clear();
+        whereParamCount = 0;
 
-        _buildWhereRaw(buffer);
+        sql.append("select ").append(selection).append(' ');
 
-        _buildWhere(buffer);
+        sql.append(" from ").append(table).append(' ');
 
-        _buildWhereIn(buffer);
+        // join
+        for (int i = 0; i < joins.size(); i++) {
+            sql.append(joins.get(i));
+        }
 
-        _buildWhereLike(buffer);
+        // seek predicate is and-ed to the criteria as a whole
+        Where criteria = seekColumns != null && seekValues != null ? where.enclose() : where;
+        boolean hasWhere = criteria.renderWhere(sql, this);
 
-        _buildGroupBy(buffer);
+        _renderSeek(sql, hasWhere);
 
-        _buildOrderBy(buffer);
+        if (grouped && groupBy != null) {
+            sql.append(" group by ").append(groupBy).append(' ');
+        }
 
-        return buffer;
+        if (ordered) {
+            _renderOrderBy(sql);
+        }
     }
 
-    private void _buildTable(StringBuffer buffer) {
-        buffer.append(String.format(" from %s ", table));
+    private int _estimateSqlLength(String selection) {
+        int length = 64 + selection.length() + table.length() + where.estimate();
+        for (int i = 0; i < joins.size(); i++) {
+            length += joins.get(i).length();
+        }
+        return length;
     }
 
-    private void _buildOrderBy(StringBuffer buffer) {
+    private void _renderOrderBy(StringBuilder sql) {
+        if (seekColumns != null) {
+            sql.append(" order by ");
+            for (int i = 0; i < seekColumns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(seekColumns[i]).append(seekDescending[i] ? " desc" : " asc");
+            }
+            sql.append(' ');
+            return;
+        }
         if (orderBy != null) {
             if (!"desc".equals(order)) {
                 order = "asc";
             }
-            buffer.append(String.format(" order by %s %s ", orderBy, order));
+            sql.append(" order by ").append(orderBy).append(' ').append(order).append(' ');
         }
     }
 
-    private void _buildGroupBy(StringBuffer buffer) {
-        if (groupBy != null) {
-            buffer.append(String.format(" group by %s ", groupBy));
-        }
-    }
+    private void _renderSeek(StringBuilder sql, boolean hasWhere) {
+        if (seekColumns == null || seekValues == null) return;
+
+        String[] names = SQLHelper.generateArrayOfNamedParameters("seek", seekColumns.length);
+        sql.append(hasWhere ? " and " : " where ");
+        grammar.handleSeek(sql, seekColumns, seekDescending, names);
 
-    private void _buildWhereLike(StringBuffer buffer) {
-        // where like
-        for (int i = 0; i < whereLikeList.size(); i++) {
-            String token = whereLikeList.get(i);
-            _appendWhere(buffer);
-            buffer.append(String.format(" lower( %s ) like %s ", token, ":" + token + WHERE_LIKE_SUFFIX));
+        for (int i = 0; i < names.length; i++) {
+            param(names[i], seekValues[i]);
         }
     }
 
@@ -411,31 +799,27 @@ public class Query {
      * @return
      */
     public List<Row> get() {
-        String sql = null;
+        if (_isDetached()) return _withWrapperReadOnly(Query::get);
+        return executeQuery(_buildGetSql());
+    }
 
+    private String _buildGetSql() {
         if (statement != null) {
-            sql = statement;
-        } else {
-            StringBuffer buffer = _buildSqlBase();
-
-            _buildSelect(buffer);
-
-            _buildPagination(buffer);
-
-            sql = buffer.toString();
+            return statement;
         }
 
-        return executeQuery(sql);
-    }
+        StringBuilder sql = _buildSql(_selection(), true);
+
+        _buildPagination(sql);
 
-    private void _buildSelect(StringBuffer buffer) {
-        // add select
-        if (select == null || "".equals(select.trim()))
-            select = "*";
-        buffer.insert(0, String.format("select %s ", select));
+        return sql.toString();
     }
 
-    private void _buildPagination(StringBuffer buffer) {
+    private void _buildPagination(StringBuilder buffer) {
+        if (seekColumns != null) {
+            grammar.handleTake(buffer, seekPageSize);
+            return;
+        }
         if (this.skip > 0) {
             grammar.handleSkip(buffer, skip);
         }
@@ -444,8 +828,32 @@ public class Query {
         }
     }
 
+    /**
+     * build sql which only selects first rows, pagination will be ignored. <br>
+     * statement can not be limited in sql, it is returned as it is.
+     *
+     * @param selection select part, null to use the select of Query object
+     * @param limit
+     * @return
+     */
+    private String _buildLimitedSql(String selection, int limit) {
+        if (statement != null) {
+            return statement;
+        }
+
+        StringBuilder sql = _buildSql(selection == null ? _selection() : selection, true);
+
+        grammar.handleTake(sql, limit);
+
+        return sql.toString();
+    }
+
     public <T> List<T> get(IRowToEntityHandler<T> handler) {
-        return processRow(get(), handler);
+        if (handler instanceof BeanRowMapper) {
+            if (_isDetached()) return _withWrapperReadOnly(query -> query.get(handler));
+            return _executeMapped(_buildGetSql(), 0, (BeanRowMapper<T>) handler);
+        }
+        return _timeMapping(() -> processRow(get(), handler));
     }
 
     /**
@@ -454,7 +862,9 @@ public class Query {
      * @return
      */
     public List<Row> all() {
-        return executeQuery(this.toSql());
+        // rendered on the connection, so the grammar of its database is used
+        if (_isDetached()) return _withWrapperReadOnly(Query::all);
+        return executeQuery(_toSql());
     }
 
     /**
@@ -465,7 +875,11 @@ public class Query {
      * @return
      */
     public <T> List<T> all(IRowToEntityHandler<T> handler) {
-        return processRow(all(), handler);
+        if (handler instanceof BeanRowMapper) {
+            if (_isDetached()) return _withWrapperReadOnly(query -> query.all(handler));
+            return _executeMapped(_toSql(), 0, (BeanRowMapper<T>) handler);
+        }
+        return _timeMapping(() -> processRow(all(), handler));
     }
 
     /**
@@ -474,7 +888,8 @@ public class Query {
      * @return
      */
     public boolean execute() {
-        return execute(this.toSql());
+        if (_isDetached()) return _withWrapper(Query::execute);
+        return execute(_toSql());
     }
 
     /**
@@ -489,17 +904,34 @@ public class Query {
      * @return
      */
     public boolean execute(String sql) {
+        if (_isDetached()) return _withWrapper(query -> query.execute(sql));
 
         NamedParameterStatement statement = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+
+        List<StagedInList> staged = null;
 
         try {
+            staged = _stageInLists(sql);
             statement = new NamedParameterStatement(connection, sql);
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
             _applyParams(statement);
-            return statement.execute();
+            if (timer != null) timer.mark(QueryPhase.BIND);
+            boolean result = statement.execute();
+            if (timer != null) timer.mark(QueryPhase.EXECUTE);
+            return result;
         } catch (SQLException e) {
+            error = e;
             throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
         } finally {
             this.closeStatement(statement);
+            _dropInLists(staged);
+            _invalidateCache(sql);
+            _endTimer(timer, QueryEvent.Type.UPDATE, sql, -1, error);
         }
     }
 
@@ -515,17 +947,35 @@ public class Query {
      * @return
      */
     public int executeUpdate(String sql) {
+        if (_isDetached()) return _withWrapper(query -> query.executeUpdate(sql));
 
         NamedParameterStatement statement = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+        int count = -1;
+
+        List<StagedInList> staged = null;
 
         try {
+            staged = _stageInLists(sql);
             statement = new NamedParameterStatement(connection, sql);
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
             _applyParams(statement);
-            return statement.executeUpdate();
+            if (timer != null) timer.mark(QueryPhase.BIND);
+            count = statement.executeUpdate();
+            if (timer != null) timer.mark(QueryPhase.EXECUTE);
+            return count;
         } catch (SQLException e) {
+            error = e;
             throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
         } finally {
             this.closeStatement(statement);
+            _dropInLists(staged);
+            _invalidateCache(sql);
+            _endTimer(timer, QueryEvent.Type.UPDATE, sql, count, error);
         }
     }
 
@@ -541,39 +991,345 @@ public class Query {
      * @return
      */
     public List<Row> executeQuery(String sql) {
+        if (_isDetached()) return _withWrapperReadOnly(query -> query.executeQuery(sql));
+        return _executeQuery(sql, 0);
+    }
+
+    /**
+     * execute query and stop reading after max rows, 0 means no limit
+     *
+     * @param sql
+     * @param maxRows
+     * @return
+     */
+    private List<Row> _executeQuery(String sql, int maxRows) {
+        QueryResultCache cache = _resultCache();
+        if (cache == null) {
+            return _executeQueryUncached(sql, maxRows);
+        }
+
+        QueryResultCache.Key key = new QueryResultCache.Key(sql, maxRows, params,
+                NamedParameterStatement.parse(sql).indexMap.keySet());
+        List<Row> cached = cache.get(key);
+        if (cached != null) {
+            // nothing is executed, build time is not reported
+            if (timer != null && !timer.deferred) timer = null;
+            return cached;
+        }
+
+        // captured before reading, a write during the read makes the result stale
+        QueryResultCache.Snapshot snapshot = cache.snapshot(SqlTables.read(sql));
+        List<Row> result = _executeQueryUncached(sql, maxRows);
+        cache.put(key, snapshot, result, cacheTtlNanos);
+        return result;
+    }
+
+    /**
+     * result cache to use, null if this query is not cached or the cache is disabled
+     *
+     * @return
+     */
+    private QueryResultCache _resultCache() {
+        // values of staged whereIn lists are not part of the cache key
+        if (cacheTtlNanos <= 0 || !stagedInLists.isEmpty()) return null;
+
+        DatabaseWrapper owner = wrapper != null ? wrapper : DatabaseWrapper.of(connection);
+        QueryResultCache cache = owner == null ? null : owner.getResultCache();
+        if (cache == null) return null;
+
+        try {
+            // uncommitted writes of own transaction must not be cached
+            return connection.getAutoCommit() ? cache : null;
+        } catch (SQLException e) {
+            throw new QueryException("SQL Exception", e);
+        }
+    }
+
+    /**
+     * invalidate cached results of tables written by the sql
+     *
+     * @param sql
+     */
+    private void _invalidateCache(String sql) {
+        DatabaseWrapper owner = wrapper != null ? wrapper : DatabaseWrapper.of(connection);
+        if (owner == null || owner.getResultCache() == null) return;
+
+        owner.tablesWritten(SqlTables.written(sql));
+    }
+
+    private List<Row> _executeQueryUncached(String sql, int maxRows) {
 
         NamedParameterStatement statement = null;
         ResultSet rs = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+        List<Row> result = null;
+        List<StagedInList> staged = null;
 
         try {
-            statement = new NamedParameterStatement(connection, sql);
+            staged = _stageInLists(sql);
+            statement = _prepareQuery(sql);
+
+            // driver side limit, also covers raw statement which can not be limited in sql
+            if (maxRows > 0) {
+                statement.getStatement().setMaxRows(maxRows);
+            }
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
 
             // apply params to statement
             _applyParams(statement);
+            if (timer != null) timer.mark(QueryPhase.BIND);
 
             // query and extract result set
             rs = statement.executeQuery();
-            return _extractResult(rs);
+            if (timer != null) timer.mark(QueryPhase.EXECUTE);
+            result = _extractResult(rs, maxRows > 0 ? null : _tuneFetchSize(rs));
+            if (timer != null) timer.mark(QueryPhase.FETCH);
+            return result;
         } catch (SQLException e) {
+            error = e;
             throw new QueryException("SQL Exception", e);
         } catch (IOException e) {
+            error = e;
             e.printStackTrace();
             throw new QueryException("I/O Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
         } finally {
             this.closeResultSet(rs);
             this.closeStatement(statement);
+            _dropInLists(staged);
+            _endTimer(timer, QueryEvent.Type.QUERY, sql, result == null ? -1 : result.size(), error);
         }
     }
 
     /**
-     * get the first one selection we found
+     * execute query and read rows straight into beans, rows are not extracted
      *
+     * @param sql
+     * @param maxRows
+     * @param mapper
+     * @param <T>
      * @return
      */
-    public Row first() {
-        List<Row> result = all();
+    private <T> List<T> _executeMapped(String sql, int maxRows, BeanRowMapper<T> mapper) {
+        if (_resultCache() != null) {
+            return processRow(_executeQuery(sql, maxRows), mapper);
+        }
 
-        if (result.size() > 0)
+        NamedParameterStatement statement = null;
+        ResultSet rs = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+        List<T> result = null;
+        List<StagedInList> staged = null;
+
+        try {
+            staged = _stageInLists(sql);
+            statement = _prepareQuery(sql);
+
+            if (maxRows > 0) {
+                statement.getStatement().setMaxRows(maxRows);
+            }
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
+
+            _applyParams(statement);
+            if (timer != null) timer.mark(QueryPhase.BIND);
+
+            rs = statement.executeQuery();
+            if (timer != null) timer.mark(QueryPhase.EXECUTE);
+
+            // rows are mapped while fetching, both are timed as fetch
+            BeanRowMapper.Plan<T> plan = mapper.plan(rs.getMetaData());
+            result = new ArrayList<T>();
+            while (rs.next()) {
+                result.add(plan.read(rs));
+            }
+            if (timer != null) timer.mark(QueryPhase.FETCH);
+            return result;
+        } catch (SQLException e) {
+            error = e;
+            throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            this.closeResultSet(rs);
+            this.closeStatement(statement);
+            _dropInLists(staged);
+            _endTimer(timer, QueryEvent.Type.QUERY, sql, result == null ? -1 : result.size(), error);
+        }
+    }
+
+    /**
+     * prepare query statement with result set hints and fetch size
+     *
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    private NamedParameterStatement _prepareQuery(String sql) throws SQLException {
+        NamedParameterStatement statement;
+
+        if (resultSetType != 0 || resultSetConcurrency != 0) {
+            statement = new NamedParameterStatement(
+                    connection,
+                    sql,
+                    resultSetType != 0 ? resultSetType : ResultSet.TYPE_FORWARD_ONLY,
+                    resultSetConcurrency != 0 ? resultSetConcurrency : ResultSet.CONCUR_READ_ONLY
+            );
+        } else {
+            statement = new NamedParameterStatement(connection, sql);
+        }
+
+        try {
+            if (resultSetType == ResultSet.TYPE_FORWARD_ONLY) {
+                statement.getStatement().setFetchDirection(ResultSet.FETCH_FORWARD);
+            }
+
+            int size = fetchSize > 0 ? fetchSize : grammar.getDefaultFetchSize();
+            if (size > 0 && fetchMemoryBudget == 0) {
+                statement.getStatement().setFetchSize(size);
+            }
+        } catch (SQLException e) {
+            this.closeStatement(statement);
+            throw e;
+        }
+
+        return statement;
+    }
+
+    /**
+     * apply first adaptive fetch size to result set, return tuner to correct it by sampled rows
+     *
+     * @param rs
+     * @return null if not adaptive
+     * @throws SQLException
+     */
+    private FetchSizeTuner _tuneFetchSize(ResultSet rs) throws SQLException {
+        if (fetchMemoryBudget == 0 || fetchSize > 0) {
+            return null;
+        }
+
+        FetchSizeTuner tuner = new FetchSizeTuner(fetchMemoryBudget, grammar);
+        rs.setFetchSize(tuner.initial(rs.getMetaData().getColumnCount()));
+        return tuner;
+    }
+
+    /**
+     * open a cursor on the query result, will ignore the pagination like <code>all()</code>. <br>
+     * Rows are read lazily, the cursor must be closed if not drained.
+     * <code>
+     * try (RowCursor cursor = Query.connect(connection).table("people").cursor()) {
+     * cursor.forEachRemaining(row -> ...);
+     * }
+     * </code>
+     *
+     * @return
+     */
+    public RowCursor cursor() {
+        return executeCursor(_toSql());
+    }
+
+    /**
+     * Execute the given SQL statement query and return a lazy cursor on its result.
+     *
+     * @param sql
+     * @return
+     */
+    public RowCursor executeCursor(String sql) {
+        if (_isDetached())
+            throw new QueryException("cursor requires a connection, use Query.connect()");
+
+        NamedParameterStatement statement = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+        List<StagedInList> staged = null;
+
+        try {
+            staged = _stageInLists(sql);
+            statement = _prepareQuery(sql);
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
+            _applyParams(statement);
+            if (timer != null) timer.mark(QueryPhase.BIND);
+            ResultSet rs = statement.executeQuery();
+            if (timer != null) timer.mark(QueryPhase.EXECUTE);
+            RowCursor cursor = new RowCursor(statement, rs, _tuneFetchSize(rs));
+            // staged tables live until the cursor is closed
+            List<StagedInList> open = staged;
+            cursor.onClose(() -> _dropInLists(open));
+            return cursor;
+        } catch (SQLException e) {
+            error = e;
+            this.closeStatement(statement);
+            _dropInLists(staged);
+            throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            this.closeStatement(statement);
+            _dropInLists(staged);
+            throw e;
+        } finally {
+            // rows are fetched lazily by the cursor, they are not counted
+            _endTimer(timer, QueryEvent.Type.QUERY, sql, -1, error);
+        }
+    }
+
+    /**
+     * stream query result lazily, the stream must be closed if not fully consumed.
+     * <code>
+     * try (Stream<Row> rows = query.table("people").stream()) {
+     * rows.forEach(row -> ...);
+     * }
+     * </code>
+     *
+     * @return
+     */
+    public Stream<Row> stream() {
+        RowCursor cursor = cursor();
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * stream query result lazily and process each row with given handler
+     *
+     * @param handler
+     * @param <T>
+     * @return
+     */
+    public <T> Stream<T> stream(IRowToEntityHandler<T> handler) {
+        return stream().map(handler::map);
+    }
+
+    /**
+     * process each row of query result with given handler, and hand over the entity to consumer. <br>
+     * Only one row is held in memory at a time.
+     *
+     * @param handler
+     * @param consumer
+     * @param <T>
+     */
+    public <T> void forEach(IRowToEntityHandler<T> handler, Consumer<? super T> consumer) {
+        try (RowCursor cursor = cursor()) {
+            while (cursor.hasNext()) {
+                consumer.accept(handler.map(cursor.next()));
+            }
+        }
+    }
+
+    /**
+     * get the first one selection we found, only one row will be fetched
+     *
+     * @return
+     */
+    public Row first() {
+        if (_isDetached()) return _withWrapperReadOnly(Query::first);
+        List<Row> result = _executeQuery(_buildLimitedSql(null, 1), 1);
+
+        if (result.size() > 0)
             return result.get(0);
 
         return null;
@@ -587,7 +1343,221 @@ public class Query {
      * @return
      */
     public <T> T first(IRowToEntityHandler<T> mapper) {
-        return mapper.map(this.first());
+        if (mapper instanceof BeanRowMapper) {
+            if (_isDetached()) return _withWrapperReadOnly(query -> query.first(mapper));
+            List<T> result = _executeMapped(_buildLimitedSql(null, 1), 1, (BeanRowMapper<T>) mapper);
+            return result.size() > 0 ? result.get(0) : null;
+        }
+        return _timeMapping(() -> mapper.map(this.first()));
+    }
+
+    /**
+     * get one page of keyset pagination with the token of next page, <code>seekAfter()</code> is required. <br>
+     * One extra row is fetched to know if there is a next page.
+     *
+     * @return
+     */
+    public SeekPage seekPage() {
+        if (_isDetached()) return _withWrapperReadOnly(Query::seekPage);
+        if (seekColumns == null) {
+            throw new QueryException("seekAfter is required to get a seek page");
+        }
+
+        List<Row> rows = _executeQuery(_buildLimitedSql(null, seekPageSize + 1), seekPageSize + 1);
+        if (rows.size() <= seekPageSize) {
+            return new SeekPage(rows, null);
+        }
+
+        rows = new ArrayList<>(rows.subList(0, seekPageSize));
+        Row last = rows.get(seekPageSize - 1);
+
+        Object[] values = new Object[seekColumns.length];
+        for (int i = 0; i < seekColumns.length; i++) {
+            // qualified column is read by its label, e.g. p.id by id
+            String label = seekColumns[i].substring(seekColumns[i].lastIndexOf('.') + 1).toLowerCase();
+            if (!last.containsKey(label)) {
+                throw new QueryException(String.format("seek column %s is not selected", seekColumns[i]));
+            }
+            values[i] = last.get(label);
+        }
+
+        return new SeekPage(rows, SeekToken.encode(values));
+    }
+
+    /**
+     * check if any selection exists, only one row will be fetched
+     *
+     * @return
+     */
+    public boolean exists() {
+        if (_isDetached()) return _withWrapperReadOnly(Query::exists);
+        return _executeQuery(_buildLimitedSql("1", 1), 1).size() > 0;
+    }
+
+    /**
+     * get the only one selection, throw QueryException if none or more than one found. <br>
+     * At most two rows will be fetched.
+     *
+     * @return
+     */
+    public Row sole() {
+        if (_isDetached()) return _withWrapperReadOnly(Query::sole);
+        return _sole(_executeQuery(_buildLimitedSql(null, 2), 2));
+    }
+
+    private <T> T _sole(List<T> result) {
+        if (result.size() == 0) {
+            throw new QueryException("no row found");
+        }
+        if (result.size() > 1) {
+            throw new QueryException("more than one row found");
+        }
+
+        return result.get(0);
+    }
+
+    /**
+     * get the only one selection and process it with given handler
+     *
+     * @param mapper
+     * @param <T>
+     * @return
+     */
+    public <T> T sole(IRowToEntityHandler<T> mapper) {
+        if (mapper instanceof BeanRowMapper) {
+            if (_isDetached()) return _withWrapperReadOnly(query -> query.sole(mapper));
+            List<T> result = _executeMapped(_buildLimitedSql(null, 2), 2, (BeanRowMapper<T>) mapper);
+            return _sole(result);
+        }
+        return _timeMapping(() -> mapper.map(this.sole()));
+    }
+
+    /**
+     * get one page with the total count of the query in one call. <br>
+     * The count is selected with the page by <code>count(*) over ()</code> where the grammar supports it,
+     * otherwise it is another statement, which runs concurrently on another connection if the Query object is
+     * created by <code>Query.with()</code>.
+     *
+     * @param page
+     * @param perPage
+     * @return
+     */
+    public PageResult paginateWithTotal(int page, int perPage) {
+        return paginateWithTotal(page, perPage, 0);
+    }
+
+    /**
+     * get one page with the total count, the count stops at <code>countCap + 1</code> rows so a huge total is cheap.
+     * <code>
+     * PageResult result = Query.connect(connection)
+     * .table("people")
+     * .paginateWithTotal(1, 20, 10000);
+     * // "more than 10000 results"
+     * boolean more = !result.isTotalExact();
+     * </code>
+     *
+     * @param page
+     * @param perPage
+     * @param countCap 0 for exact count
+     * @return
+     */
+    public PageResult paginateWithTotal(int page, int perPage, int countCap) {
+        if (statement != null) {
+            throw new QueryException("total can not be counted for raw statement");
+        }
+
+        paginate(page, perPage);
+
+        // detached Query counts on its own connection
+        if (_isDetached()) return _withWrapperReadOnly(query -> query._paginateWithTotal(countCap, this));
+        return _paginateWithTotal(countCap, null);
+    }
+
+    /**
+     * @param countCap
+     * @param detached Query to count on another connection concurrently, null to count on this connection
+     * @return
+     */
+    private PageResult _paginateWithTotal(int countCap, Query detached) {
+        if (countCap <= 0 && grammar.supportsWindowCount()) {
+            String sql = _buildWindowCountSql();
+            if (sql != null) {
+                List<Row> rows = _executeQuery(sql, 0);
+                // an empty page past the end does not tell the total
+                if (rows.size() > 0 || skip == 0) {
+                    long total = 0;
+                    for (Row row : rows) {
+                        total = ((Number) row.remove(TOTAL_COUNT)).longValue();
+                    }
+                    return new PageResult(rows, total, true);
+                }
+            }
+        }
+
+        CompletableFuture<Long> future = detached == null ? null : detached._async(query -> query._countTotal(countCap));
+
+        List<Row> rows = get();
+        long total;
+        if (future == null) {
+            total = _countTotal(countCap);
+        } else {
+            try {
+                total = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        return new PageResult(rows, total, countCap <= 0 || total <= countCap);
+    }
+
+    /**
+     * page sql with window count column, null if the selection can not take the column
+     *
+     * @return
+     */
+    private String _buildWindowCountSql() {
+        String selection = select == null || "".equals(select.trim()) ? "*" : select.trim();
+
+        // window function is evaluated before distinct
+        if (selection.toLowerCase().startsWith("distinct ")) return null;
+
+        if ("*".equals(selection)) {
+            // some databases do not take other columns after a bare *, qualify it with the table
+            if (joins.size() > 0) return null;
+            String[] parts = table.trim().split("\\s+");
+            selection = parts[parts.length - 1] + ".*";
+        }
+
+        StringBuilder sql = _buildSql(selection + ", count(*) over () " + TOTAL_COUNT, true);
+        _buildPagination(sql);
+
+        return sql.toString();
+    }
+
+    /**
+     * count rows of the query in a sub query, which keeps group by and distinct right
+     *
+     * @param countCap stop counting after countCap + 1 rows, 0 for no cap
+     * @return
+     */
+    private long _countTotal(int countCap) {
+        if (_isDetached()) return _withWrapperReadOnly(query -> query._countTotal(countCap));
+
+        String selection = select != null && select.trim().toLowerCase().startsWith("distinct ") ? select : "1";
+
+        StringBuilder sql = new StringBuilder(_estimateSqlLength(selection) + 64);
+        sql.append("select count(*) ").append(TOTAL_COUNT).append(" from ( ");
+        _renderSql(sql, selection, false, true);
+
+        if (countCap > 0) {
+            grammar.handleTake(sql, countCap + 1);
+        }
+
+        sql.append(" ) total__");
+
+        return ((Number) _executeQuery(sql.toString(), 0).get(0).get(TOTAL_COUNT)).longValue();
     }
 
     /**
@@ -602,11 +1572,7 @@ public class Query {
     public int count(String countStr) {
         if (countStr == null || "".equals(countStr.trim())) countStr = "*";
 
-        StringBuffer buffer = _buildSqlBase();
-
-        buffer.insert(0, String.format("select count(%s) count ", countStr));
-
-        String sql = buffer.toString();
+        String sql = _buildSql("count(" + countStr + ") count", true).toString();
 
         List<Row> result = executeQuery(sql);
 
@@ -623,53 +1589,693 @@ public class Query {
         return Integer.parseInt(countStr.toString());
     }
 
-    private void _applyParams(NamedParameterStatement statement) throws SQLException {
-        // apply params
-        for (Entry<String, Object> entry : params.entrySet()) {
+    /**
+     * insert rows into table in JDBC batches, SQL is prepared once and flushed every <code>batchSize</code> rows.
+     * <br>
+     * Columns are taken from the keys of the first row, missing keys of other rows are inserted as null.
+     * <code>
+     * int[] counts = Query.connect(connection)
+     * .table("people")
+     * .insertBatch(rows, 500);
+     * </code>
+     *
+     * @param rows
+     * @param batchSize
+     * @return update counts of all rows
+     */
+    public int[] insertBatch(Iterable<? extends Map<String, ?>> rows, int batchSize) {
+        if (_isDetached()) return _withWrapper(query -> query.insertBatch(rows, batchSize));
+        if (table == null)
+            throw new QueryException("table is required");
+
+        Iterator<? extends Map<String, ?>> iterator = rows.iterator();
+        if (!iterator.hasNext()) {
+            return new int[0];
+        }
+
+        Map<String, ?> first = iterator.next();
+        String[] attributes = first.keySet().toArray(new String[0]);
+
+        return _executeBatch(SQLHelper.buildInsertSql(table, attributes), attributes, first, iterator, batchSize,
+                _expectedRows(rows));
+    }
+
+    /**
+     * insert rows into table with multi-row insert statements, <code>values (...), (...)</code> or
+     * <code>insert all</code> for oracle. <br>
+     * Rows are chunked under the bind parameter limit of the grammar. Chunks have power of two sizes, so only a
+     * few statement shapes are ever prepared and their parsed SQL is reused.
+     * Columns are taken from the keys of the first row, missing keys of other rows are inserted as null.
+     * <code>
+     * int inserted = Query.connect(connection)
+     * .table("people")
+     * .bulkInsert(rows);
+     * </code>
+     *
+     * @param rows
+     * @return number of inserted rows
+     */
+    public int bulkInsert(Iterable<? extends Map<String, ?>> rows) {
+        return bulkInsert(rows, DEFAULT_ROWS_PER_INSERT);
+    }
+
+    /**
+     * insert rows into table with multi-row insert statements of at most the given rows
+     *
+     * @param rows
+     * @param maxRowsPerStatement
+     * @return number of inserted rows
+     */
+    public int bulkInsert(Iterable<? extends Map<String, ?>> rows, int maxRowsPerStatement) {
+        if (_isDetached()) return _withWrapper(query -> query.bulkInsert(rows, maxRowsPerStatement));
+        if (table == null)
+            throw new QueryException("table is required");
+        if (maxRowsPerStatement <= 0)
+            throw new QueryException("rows per statement must be positive");
+
+        Iterator<? extends Map<String, ?>> iterator = rows.iterator();
+        if (!iterator.hasNext()) {
+            return 0;
+        }
 
-            String key = entry.getKey();
-            Object value = entry.getValue();
+        Map<String, ?> row = iterator.next();
+        String[] attributes = row.keySet().toArray(new String[0]);
+        int limit = Math.min(maxRowsPerStatement, Math.max(1, grammar.getMaxBindParameters() / attributes.length));
+        int chunkSize = Integer.highestOneBit(limit);
 
-            if (key == null) continue;
+        List<Map<String, ?>> chunk = new ArrayList<>(Math.min(chunkSize, _expectedRows(rows)));
+        NamedParameterStatement statement = null;
+        String[][] names = null;
+        String sql = null;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+        int total = 0;
+
+        try {
+            while (row != null) {
+                chunk.add(row);
+                row = iterator.hasNext() ? iterator.next() : null;
+
+                if (chunk.size() == chunkSize) {
+                    // full chunks share one statement
+                    if (statement == null) {
+                        names = SQLHelper.generateRowsOfNamedParameters(attributes, chunkSize);
+                        sql = _buildMultiRowInsert(attributes, names);
+                        statement = new NamedParameterStatement(connection, sql);
+                        if (timer != null) timer.mark(QueryPhase.PREPARE);
+                    }
+                    total += _executeInsertChunk(statement, attributes, names, chunk, 0, timer);
+                    chunk.clear();
+                }
+            }
+
+            // rest in descending power of two chunks, e.g. 13 rows as 8 + 4 + 1
+            int offset = 0;
+            for (int size = Integer.highestOneBit(Math.max(1, chunk.size())); offset < chunk.size(); size >>= 1) {
+                if (chunk.size() - offset < size) continue;
+
+                String[][] restNames = SQLHelper.generateRowsOfNamedParameters(attributes, size);
+                String restSql = _buildMultiRowInsert(attributes, restNames);
+                if (sql == null) {
+                    sql = restSql;
+                }
+
+                NamedParameterStatement rest = new NamedParameterStatement(connection, restSql);
+                try {
+                    if (timer != null) timer.mark(QueryPhase.PREPARE);
+                    total += _executeInsertChunk(rest, attributes, restNames, chunk, offset, timer);
+                } finally {
+                    this.closeStatement(rest);
+                }
+                offset += size;
+            }
+
+            return total;
+        } catch (SQLException e) {
+            error = e;
+            throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            this.closeStatement(statement);
+            if (sql != null) {
+                _invalidateCache(sql);
+                _endTimer(timer, QueryEvent.Type.BATCH, sql, total, error);
+            }
+        }
+    }
+
+    /**
+     * number of rows if the rows are a collection, otherwise a small initial capacity
+     */
+    private static int _expectedRows(Iterable<?> rows) {
+        return rows instanceof Collection ? ((Collection<?>) rows).size() : 16;
+    }
+
+    private String _buildMultiRowInsert(String[] attributes, String[][] names) {
+        StringBuilder buffer = new StringBuilder();
+        grammar.handleMultiRowInsert(buffer, table, attributes, names);
+        return buffer.toString();
+    }
+
+    /**
+     * bind rows of the chunk from offset, one row for each row of names, and execute the statement
+     */
+    private int _executeInsertChunk(NamedParameterStatement statement, String[] attributes, String[][] names,
+                                    List<Map<String, ?>> chunk, int offset, QueryTimer timer) throws SQLException {
+        for (int i = 0; i < names.length; i++) {
+            Map<String, ?> row = chunk.get(offset + i);
+            for (int j = 0; j < attributes.length; j++) {
+                statement.bind(names[i][j], row.get(attributes[j]));
+            }
+        }
+        if (timer != null) timer.mark(QueryPhase.BIND);
+
+        int count = statement.executeUpdate();
+        if (timer != null) timer.mark(QueryPhase.EXECUTE);
+        return count;
+    }
+
+    /**
+     * update table in JDBC batches, one statement for each row. <br>
+     * Columns are taken from the keys of the first row, keys used as named parameters in criteria are not updated.
+     * <code>
+     * int[] counts = Query.connect(connection)
+     * .table("people")
+     * .updateBatch(rows, 500, "id = :id");
+     * </code>
+     *
+     * @param rows
+     * @param batchSize
+     * @param criteria
+     * @return update counts of all rows
+     */
+    public int[] updateBatch(Iterable<? extends Map<String, ?>> rows, int batchSize, String criteria) {
+        if (_isDetached()) return _withWrapper(query -> query.updateBatch(rows, batchSize, criteria));
+        if (table == null)
+            throw new QueryException("table is required");
+        if (criteria == null || criteria.trim().length() == 0)
+            throw new QueryException("criteria is required");
+
+        Iterator<? extends Map<String, ?>> iterator = rows.iterator();
+        if (!iterator.hasNext()) {
+            return new int[0];
+        }
+
+        Map<String, int[]> criteriaParams = new HashMap<>();
+        NamedParameterStatement.parse(criteria, criteriaParams);
+
+        Map<String, ?> first = iterator.next();
+        List<String> attributes = new ArrayList<>();
+        for (String key : first.keySet()) {
+            if (!criteriaParams.containsKey(key)) {
+                attributes.add(key);
+            }
+        }
+        if (attributes.isEmpty()) {
+            throw new QueryException("no column to update");
+        }
+
+        String sql = SQLHelper.buildUpdateSql(table, attributes.toArray(new String[0]), criteria);
+
+        List<String> names = new ArrayList<>(attributes);
+        names.addAll(criteriaParams.keySet());
+
+        return _executeBatch(sql, names.toArray(new String[0]), first, iterator, batchSize, _expectedRows(rows));
+    }
+
+    /**
+     * @param expectedRows number of rows if known, counts array grows past it
+     */
+    private int[] _executeBatch(String sql, String[] names, Map<String, ?> first,
+                                Iterator<? extends Map<String, ?>> rest, int batchSize, int expectedRows) {
+        if (batchSize <= 0)
+            throw new QueryException("batch size must be positive");
+
+        int maxBatchSize = (int) Math.min(Integer.MAX_VALUE, batchSize * 8L);
+        AdaptiveBatchSize size = new AdaptiveBatchSize(batchSize, 1, maxBatchSize,
+                TimeUnit.MILLISECONDS.toNanos(batchFlushTargetMillis));
+        NamedParameterStatement statement = null;
+        int[] counts = new int[expectedRows];
+        int total = 0;
+        QueryTimer timer = _startTimer();
+        Throwable error = null;
+
+        try {
+            statement = new NamedParameterStatement(connection, sql);
+            if (timer != null) timer.mark(QueryPhase.PREPARE);
+
+            Map<String, ?> row = first;
+            int pending = 0;
+            while (row != null) {
+                for (String name : names) {
+                    statement.bind(name, row.get(name));
+                }
+                statement.addBatch();
+                pending++;
+
+                row = rest.hasNext() ? rest.next() : null;
+
+                if (pending >= size.get() || row == null) {
+                    if (timer != null) timer.mark(QueryPhase.BIND);
+                    long start = System.nanoTime();
+                    int[] flushed = statement.executeBatch();
+                    size.record(pending, System.nanoTime() - start);
+                    if (timer != null) timer.mark(QueryPhase.EXECUTE);
+
+                    if (total + flushed.length > counts.length) {
+                        counts = Arrays.copyOf(counts, Math.max(counts.length * 2, total + flushed.length));
+                    }
+                    System.arraycopy(flushed, 0, counts, total, flushed.length);
+                    total += flushed.length;
+                    pending = 0;
+                }
+            }
+
+            return Arrays.copyOf(counts, total);
+        } catch (SQLException e) {
+            error = e;
+            throw new QueryException("SQL Exception", e);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            this.closeStatement(statement);
+            _invalidateCache(sql);
+            _endTimer(timer, QueryEvent.Type.BATCH, sql, total, error);
+        }
+    }
+
+    //============= parallel actions
+
+    /**
+     * scan all rows with several connections at once, split into ranges of a numeric column. <br>
+     * Each partition runs on the executor with its own connection of the wrapper, so the Query object must be
+     * created by <code>Query.with()</code>. Rows are returned partition by partition in range order, so ordering by
+     * the partition column gives the same order as <code>all()</code>. Rows with null partition column are in the
+     * first partition.
+     * <code>
+     * List<Row> rows = Query.with(databaseWrapper)
+     * .table("orders")
+     * .orderBy("id", "asc")
+     * .parallelAll("id", 8);
+     * </code>
+     *
+     * @param partitionColumn numeric column, ideally indexed
+     * @param partitions      number of partitions, which is also the max number of connections used
+     * @return
+     */
+    public List<Row> parallelAll(String partitionColumn, int partitions) {
+        List<CompletableFuture<List<Row>>> futures = new ArrayList<>();
+        List<Row> result = new ArrayList<>();
+        try {
+            for (Query partition : _partitions(partitionColumn, partitions)) {
+                futures.add(partition._async(Query::all));
+            }
+            for (CompletableFuture<List<Row>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (RejectedExecutionException e) {
+            // partitions not started yet do not run
+            _cancel(futures);
+            throw new QueryException("executor rejected a partition of parallel scan", e);
+        } catch (CompletionException e) {
+            _cancel(futures);
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return result;
+    }
+
+    private static void _cancel(List<? extends CompletableFuture<?>> futures) {
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * stream all rows with several connections at once, rows of all partitions are combined as they are read,
+     * without order. <br>
+     * At most <code>PARALLEL_BUFFER_SIZE</code> rows wait for the consumer, the stream must be closed if not fully
+     * consumed.
+     * <code>
+     * try (Stream<Row> rows = Query.with(databaseWrapper).table("orders").parallelStream("id", 8)) {
+     * rows.forEach(row -> ...);
+     * }
+     * </code>
+     *
+     * @param partitionColumn
+     * @param partitions
+     * @return
+     */
+    public Stream<Row> parallelStream(String partitionColumn, int partitions) {
+        List<Query> queries = _partitions(partitionColumn, partitions);
+        ParallelScan scan = new ParallelScan(queries.size(), PARALLEL_BUFFER_SIZE);
+
+        Executor target = _executor();
+        try {
+            for (Query partition : queries) {
+                target.execute(() -> scan.produce(sink -> partition._withWrapperReadOnly(query -> {
+                    try (RowCursor cursor = query.cursor()) {
+                        while (cursor.hasNext() && sink.test(cursor.next())) {
+                            // next row
+                        }
+                    }
+                    return null;
+                })));
+            }
+        } catch (RejectedExecutionException e) {
+            // the partition would never end, producers already started stop at their next row
+            scan.close();
+            throw new QueryException("executor rejected a partition of parallel scan", e);
+        }
+
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(scan, Spliterator.NONNULL), false)
+                .onClose(scan::close);
+    }
+
+    /**
+     * split the query into detached queries of ranges of the column, from its min and max values
+     *
+     * @param column
+     * @param partitions
+     * @return
+     */
+    private List<Query> _partitions(String column, int partitions) {
+        if (!_isDetached()) {
+            throw new QueryException("parallel scan requires Query.with(DatabaseWrapper)");
+        }
+        if (statement != null) {
+            throw new QueryException("raw statement can not be partitioned");
+        }
+        if (partitions <= 0) {
+            throw new QueryException("partitions must be positive");
+        }
+
+        Row range = _withWrapperReadOnly(query -> query._partitionRange(column));
+        Object min = range.get("partition__min");
+        Object max = range.get("partition__max");
+
+        List<Query> queries = new ArrayList<>();
+        if (min == null || max == null) {
+            // nothing or only nulls
+            queries.add(_copy(null));
+            return queries;
+        }
+        if (!(min instanceof Number) || !(max instanceof Number)) {
+            throw new QueryException(String.format("partition column %s must be numeric", column));
+        }
+
+        long low = ((Number) min).longValue();
+        long high = ((Number) max).longValue();
+        // ceil of span / partitions, without overflow of the span
+        double span = (double) high - low + 1;
+        long step = Math.max(1, (long) Math.ceil(span / partitions));
+        int count = (int) Math.min(partitions, (long) Math.ceil(span / step));
+
+        for (int i = 0; i < count; i++) {
+            Query query = _copy(null);
+            query.timer = null;
+            long from = low + i * step;
+            long to = from + step;
+
+            if (count == 1) {
+                // single partition, no range needed
+            } else if (i == 0) {
+                query.where.where(String.format(" ( %s < :partition__to or %s is null ) ", column, column));
+                query.params.put("partition__to", to);
+            } else if (i == count - 1) {
+                query.where.where(String.format(" %s >= :partition__from ", column));
+                query.params.put("partition__from", from);
+            } else {
+                query.where.where(String.format(" %s >= :partition__from and %s < :partition__to ", column, column));
+                query.params.put("partition__from", from);
+                query.params.put("partition__to", to);
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    /**
+     * min and max of the column in rows matching the criteria, one row without group, order or limit
+     *
+     * @param column
+     * @return
+     */
+    private Row _partitionRange(String column) {
+        String selection = "min(" + column + ") partition__min, max(" + column + ") partition__max";
+        return _executeQuery(_buildSql(selection, false, false).toString(), 0).get(0);
+    }
+
+    //============= async actions
+
+    /**
+     * run <code>get()</code> on the executor
+     *
+     * @return
+     */
+    public CompletableFuture<List<Row>> getAsync() {
+        return _async(Query::get);
+    }
+
+    public <T> CompletableFuture<List<T>> getAsync(IRowToEntityHandler<T> handler) {
+        return _async(query -> query.get(handler));
+    }
+
+    /**
+     * run <code>all()</code> on the executor
+     *
+     * @return
+     */
+    public CompletableFuture<List<Row>> allAsync() {
+        return _async(Query::all);
+    }
+
+    public <T> CompletableFuture<List<T>> allAsync(IRowToEntityHandler<T> handler) {
+        return _async(query -> query.all(handler));
+    }
+
+    /**
+     * run <code>count()</code> on the executor
+     *
+     * @return
+     */
+    public CompletableFuture<Integer> countAsync() {
+        return _async(Query::count);
+    }
 
-            statement.setObject(key, value);
+    public CompletableFuture<Integer> countAsync(String countStr) {
+        return _async(query -> query.count(countStr));
+    }
+
+    /**
+     * run <code>executeUpdate(sql)</code> on the executor
+     *
+     * @param sql
+     * @return
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String sql) {
+        return _async(query -> query.executeUpdate(sql));
+    }
+
+    /**
+     * run action on a snapshot of this Query object, so it can be changed or reused after async call. <br>
+     * Query created by <code>Query.with()</code> borrows its connection on the executor thread,
+     * otherwise the bound connection is used and must not be used by other threads meanwhile.
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> CompletableFuture<T> _async(Function<Query, T> action) {
+        Query snapshot = _copy(connection);
+        // runs on another thread, it times its own action
+        snapshot.timer = null;
+
+        return CompletableFuture.supplyAsync(() -> action.apply(snapshot), _executor());
+    }
+
+    private Executor _executor() {
+        if (executor != null) return executor;
+        return wrapper != null ? wrapper.getExecutor() : QueryExecutors.defaultExecutor();
+    }
+
+    /**
+     * timer of the statement about to run, the time since sql build started is its build phase
+     *
+     * @return null if no listener is registered
+     */
+    private QueryTimer _startTimer() {
+        QueryTimer current = timer;
+        if (current == null) {
+            if (!QueryListeners.isActive()) return null;
+            current = new QueryTimer(false);
         }
+        current.mark(QueryPhase.BUILD);
+        return current;
     }
 
-    private List<Row> _extractResult(ResultSet rs) throws SQLException, IOException {
+    private void _endTimer(QueryTimer current, QueryEvent.Type type, String sql, long rows, Throwable error) {
+        if (current == null) return;
+        current.executed(type, sql, rows, error);
+        if (!current.deferred) {
+            timer = null;
+        }
+    }
+
+    /**
+     * run the action which maps rows after execution, mapping is timed in the same event as execution
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> T _timeMapping(Supplier<T> action) {
+        if (!QueryListeners.isActive()) return action.get();
+
+        QueryTimer current = new QueryTimer(true);
+        timer = current;
+        try {
+            T result = action.get();
+            current.mark(QueryPhase.MAPPING);
+            current.emit(null);
+            return result;
+        } finally {
+            timer = null;
+        }
+    }
+
+    /**
+     * render sql which is not executed now, the timer started by rendering is dropped so a later
+     * action does not report the time since then as its build phase
+     *
+     * @param render
+     * @param <T>
+     * @return
+     */
+    private <T> T _untimed(Supplier<T> render) {
+        QueryTimer current = timer;
+        try {
+            return render.get();
+        } finally {
+            timer = current;
+        }
+    }
+
+    private boolean _isDetached() {
+        return connection == null && wrapper != null;
+    }
+
+    /**
+     * run action on a copy of this Query object bound to a connection of the wrapper
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> T _withWrapper(Function<Query, T> action) {
+        return wrapper.execute((Connection conn) -> action.apply(_copy(conn)));
+    }
+
+    /**
+     * run read only action like <code>_withWrapper()</code>, a routing wrapper may run it on a replica
+     *
+     * @param action
+     * @param <T>
+     * @return
+     */
+    private <T> T _withWrapperReadOnly(Function<Query, T> action) {
+        return wrapper.executeReadOnly((Connection conn) -> action.apply(_copy(conn)));
+    }
+
+    /**
+     * copy building state and params to a new Query object
+     *
+     * @param target connection of the copy, null to keep it detached
+     * @return
+     */
+    private Query _copy(Connection target) {
+        Query query;
+        if (target == null || target == this.connection) {
+            query = new Query(wrapper);
+            query.connection = this.connection;
+            query.grammar = this.grammar;
+        } else {
+            query = new Query(target);
+            query.wrapper = wrapper;
+        }
+
+        query.table = table;
+        query.select = select;
+        query.where = where.copy();
+        query.stagedInLists = new ArrayList<>(stagedInLists);
+        query.skip = skip;
+        query.take = take;
+        query.orderBy = orderBy;
+        query.order = order;
+        query.groupBy = groupBy;
+        query.statement = statement;
+        query.joins = new ArrayList<>(joins);
+        query.params = new HashMap<>(params);
+        query.batchFlushTargetMillis = batchFlushTargetMillis;
+        query.fetchSize = fetchSize;
+        query.fetchMemoryBudget = fetchMemoryBudget;
+        query.resultSetType = resultSetType;
+        query.resultSetConcurrency = resultSetConcurrency;
+        query.executor = executor;
+        query.seekColumns = seekColumns;
+        query.seekDescending = seekDescending;
+        query.seekValues = seekValues;
+        query.seekPageSize = seekPageSize;
+        query.cacheTtlNanos = cacheTtlNanos;
+        // copy runs the action of this Query object, it shares the timer
+        query.timer = timer;
+        return query;
+    }
+
+    /**
+     * render the query once into a reusable, thread safe template, pagination is respected like <code>get()</code>.
+     * <br>
+     * Params assigned so far become default values of the template.
+     * <code>
+     * CompiledQuery compiled = Query.connect(connection)
+     * .table("people")
+     * .where("age > :age")
+     * .compile();
+     * List<Row> rows = compiled.bind(Collections.singletonMap("age", 10)).all(otherConnection);
+     * </code>
+     *
+     * @return
+     */
+    public CompiledQuery compile() {
+        if (_isDetached()) return _withWrapperReadOnly(Query::compile);
+        String sql = _untimed(this::_buildGetSql);
+        if (!stagedInLists.isEmpty())
+            throw new QueryException("whereIn staged in temporary table can not be compiled");
+        return new CompiledQuery(sql, NamedParameterStatement.parse(sql), params);
+    }
+
+    private void _applyParams(NamedParameterStatement statement) throws SQLException {
+        // bound by the plan of the parsed sql, params not in sql are ignored
+        statement.bind(params, false);
+    }
+
+    private List<Row> _extractResult(ResultSet rs, FetchSizeTuner tuner) throws SQLException, IOException {
         List<Row> result = new ArrayList<Row>();
 
+        // column labels are resolved once and shared by all rows
+        RowSchema schema = RowSchema.of(rs.getMetaData());
+
         // get result
         while (rs.next()) {
-
-            Row item = new Row();
-            ResultSetMetaData meta = rs.getMetaData();
-            int count = meta.getColumnCount();
-
-            for (int i = 1; i <= count; i++) {
-
-                String key = meta.getColumnLabel(i).toLowerCase();
-                Object value = rs.getObject(i);
-
-                /*
-                sql query allows multi columns with same name, we can add table name before the column name
-                to make it more clear, but still can not prevent name duplication, and will cause more format
-                trouble.
-                example: select id, username as id, created_at as id from account;
-                this query has 3 id are listed, and none of them are same, even with table name, we can not
-                identify one from another.
-                also, in ResultSet class, these columns are identified by index, while retrieve data by name will only
-                return the first found one.
-                So, we keep the same pattern here. Always use the first found value while has duplicated key.
-                also, developer should be informed by this information.
-                 */
-                // if key is added, ignore this value
-                if (item.containsKey(key)) continue;
-
-                item.put(key, value);
+            Row row = schema.read(rs);
+            if (tuner != null) {
+                tuner.sample(row, rs);
             }
-
-            result.add(item);
+            result.add(row);
         }
 
         return result;
@@ -708,11 +2314,13 @@ public class Query {
     }
 
     public String toSql() {
+        return _untimed(this::_toSql);
+    }
+
+    private String _toSql() {
         if (this.statement != null) {
             return this.statement;
         }
-        StringBuffer buffer = _buildSqlBase();
-        _buildSelect(buffer);
-        return buffer.toString();
+        return _buildSql(_selection(), true).toString();
     }
 }
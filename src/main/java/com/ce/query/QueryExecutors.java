@@ -0,0 +1,71 @@
+package com.ce.query;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * default executor of asynchronous query actions. <br>
+ * On JDK 21+ every task runs on its own virtual thread, otherwise on a cached pool of daemon threads.
+ */
+public final class QueryExecutors {
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private QueryExecutors() {
+    }
+
+    public static Executor defaultExecutor() {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (QueryExecutors.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = createDefaultExecutor();
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * whether default executor runs tasks on virtual threads
+     *
+     * @return
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactoryMethod() != null;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        Method method = virtualThreadFactoryMethod();
+        if (method != null) {
+            try {
+                return (ExecutorService) method.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // fall back to platform threads
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "database-query-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | RuntimeException e) {
+            // before JDK 21
+            return null;
+        }
+    }
+}
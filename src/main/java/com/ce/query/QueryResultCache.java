@@ -0,0 +1,200 @@
+package com.ce.query;
+
+import com.ce.query.cache.CacheStats;
+import com.ce.query.cache.LruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Result cache of queries marked by <code>Query.cacheFor()</code>, owned by a {@link DatabaseWrapper}. <br>
+ * Results are keyed by SQL and bound params, bounded by estimated bytes of cached rows and evicted least recently
+ * used first. Writes through the same DatabaseWrapper invalidate results of the written tables: each table has a
+ * generation which is captured before reading, a result is stale once any of its tables moved on.
+ */
+public class QueryResultCache {
+
+    private final LruCache<Key, Entry> cache;
+    private final CacheStats stats = new CacheStats();
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    public QueryResultCache(long maxBytes) {
+        this.cache = new LruCache<>(maxBytes, entry -> entry.weight, stats, null);
+    }
+
+    /**
+     * cached rows of the key, copies are returned so they can be changed by caller
+     *
+     * @param key
+     * @return null if not cached, expired or stale
+     */
+    List<Row> get(Key key) {
+        long now = System.nanoTime();
+        Entry entry = cache.get(key, value -> value.expiresAt - now > 0 && isFresh(value));
+        return entry == null ? null : copy(entry.rows);
+    }
+
+    /**
+     * generations of tables, to be captured before reading
+     *
+     * @param tables
+     * @return
+     */
+    Snapshot snapshot(Set<String> tables) {
+        String[] names = tables.toArray(new String[0]);
+        long[] captured = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            captured[i] = generation(names[i]).get();
+        }
+        return new Snapshot(globalGeneration.get(), names, captured);
+    }
+
+    void put(Key key, Snapshot snapshot, List<Row> rows, long ttlNanos) {
+        List<Row> copies = copy(rows);
+
+        long weight = 64 + 2L * key.sql.length();
+        for (Row row : copies) {
+            weight += RowSizeEstimator.estimate(row);
+        }
+
+        Entry entry = new Entry(copies, snapshot, System.nanoTime() + ttlNanos, weight);
+        // a write happened while reading, the result may be stale already
+        if (isFresh(entry)) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * invalidate results reading any of the tables
+     *
+     * @param tables lower cased names, null to invalidate all
+     */
+    public void invalidate(Collection<String> tables) {
+        if (tables == null) {
+            invalidateAll();
+            return;
+        }
+        for (String table : tables) {
+            generation(table.toLowerCase()).incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * estimated bytes of cached results
+     *
+     * @return
+     */
+    public long getEstimatedBytes() {
+        return cache.getWeight();
+    }
+
+    public long getMaxBytes() {
+        return cache.getMaxWeight();
+    }
+
+    private boolean isFresh(Entry entry) {
+        Snapshot snapshot = entry.snapshot;
+        if (snapshot.global != globalGeneration.get()) return false;
+
+        for (int i = 0; i < snapshot.tables.length; i++) {
+            if (generation(snapshot.tables[i]).get() != snapshot.generations[i]) return false;
+        }
+        return true;
+    }
+
+    private AtomicLong generation(String table) {
+        AtomicLong generation = generations.get(table);
+        if (generation == null) {
+            generations.putIfAbsent(table, new AtomicLong());
+            generation = generations.get(table);
+        }
+        return generation;
+    }
+
+    private static List<Row> copy(List<Row> rows) {
+        List<Row> copies = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            copies.add(row.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * SQL, row limit and values of the params used by the SQL
+     */
+    static final class Key {
+        private final String sql;
+        private final int maxRows;
+        private final Map<String, Object> params;
+        private final int hash;
+
+        Key(String sql, int maxRows, Map<String, Object> params, Set<String> used) {
+            this.sql = sql;
+            this.maxRows = maxRows;
+            this.params = new TreeMap<>();
+            for (String name : used) {
+                this.params.put(name, params.get(name));
+            }
+            this.hash = 31 * (31 * sql.hashCode() + maxRows) + this.params.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return maxRows == key.maxRows && sql.equals(key.sql) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class Snapshot {
+        private final long global;
+        private final String[] tables;
+        private final long[] generations;
+
+        Snapshot(long global, String[] tables, long[] generations) {
+            this.global = global;
+            this.tables = tables;
+            this.generations = generations;
+        }
+    }
+
+    private static final class Entry {
+        private final List<Row> rows;
+        private final Snapshot snapshot;
+        private final long expiresAt;
+        private final long weight;
+
+        Entry(List<Row> rows, Snapshot snapshot, long expiresAt, long weight) {
+            this.rows = rows;
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+}
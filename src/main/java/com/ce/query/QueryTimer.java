@@ -0,0 +1,66 @@
+package com.ce.query;
+
+import com.ce.query.listener.QueryEvent;
+import com.ce.query.listener.QueryListeners;
+import com.ce.query.listener.QueryPhase;
+
+/**
+ * phase timer of one Query action, only created while query listeners are registered
+ */
+final class QueryTimer {
+
+    private final long[] nanos = new long[QueryPhase.values().length];
+    private long mark = System.nanoTime();
+    private QueryEvent.Type type;
+    private String sql;
+    private long rows = -1;
+    private boolean emitted = false;
+
+    // the action maps rows after execution, it emits the event itself
+    final boolean deferred;
+
+    QueryTimer(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /**
+     * start timing the next phase from now
+     */
+    void restart() {
+        mark = System.nanoTime();
+    }
+
+    /**
+     * end the phase, which started at previous mark
+     *
+     * @param phase
+     */
+    void mark(QueryPhase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - mark;
+        mark = now;
+    }
+
+    /**
+     * record the executed statement, the event is emitted unless deferred or failed
+     *
+     * @param type
+     * @param sql
+     * @param rows
+     * @param error
+     */
+    void executed(QueryEvent.Type type, String sql, long rows, Throwable error) {
+        this.type = type;
+        this.sql = sql;
+        this.rows = rows;
+        if (error != null || !deferred) {
+            emit(error);
+        }
+    }
+
+    void emit(Throwable error) {
+        if (emitted || sql == null) return;
+        emitted = true;
+        QueryListeners.fire(new QueryEvent(type, sql, nanos, rows, error));
+    }
+}
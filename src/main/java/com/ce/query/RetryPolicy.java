@@ -0,0 +1,122 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry of the outermost <code>DatabaseWrapper.transaction</code> failed by a transient error. <br>
+ * An error is transient if a SQLException in its cause chain is a SQLTransientException,
+ * or its SQLState is one of the transient states, deadlock and serialization failures by default.
+ * Attempts are delayed by full jitter backoff, a random time up to <code>base * 2^(attempt - 1)</code>
+ * capped by <code>maxBackoffMillis</code>, so the competing transactions do not collide again.
+ * <code>
+ * databaseWrapper.setRetryPolicy(new RetryPolicy(5, 10, 500));
+ * </code>
+ */
+public final class RetryPolicy {
+
+    /**
+     * 40001 serialization failure, also deadlock of H2 and MySQL, 40P01 deadlock of PostgreSQL,
+     * 40XL1 lock timeout of Derby, HYT00 lock timeout of H2
+     */
+    public static final Set<String> DEFAULT_TRANSIENT_STATES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("40001", "40P01", "40XL1", "HYT00")));
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Set<String> transientStates;
+
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        this(maxAttempts, baseBackoffMillis, maxBackoffMillis, DEFAULT_TRANSIENT_STATES);
+    }
+
+    /**
+     * @param maxAttempts       attempts including the first one, 1 disables retry
+     * @param baseBackoffMillis max delay before the second attempt, doubled by each further attempt
+     * @param maxBackoffMillis  cap of the delay
+     * @param transientStates   SQLStates which are retried
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis, Collection<String> transientStates) {
+        if (maxAttempts <= 0)
+            throw new QueryException("max attempts must be positive");
+        if (baseBackoffMillis < 0 || maxBackoffMillis < 0)
+            throw new QueryException("backoff must not be negative");
+        if (transientStates == null)
+            throw new QueryException("transient states are required");
+
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.transientStates = Collections.unmodifiableSet(new HashSet<>(transientStates));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseBackoffMillis() {
+        return baseBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public Set<String> getTransientStates() {
+        return transientStates;
+    }
+
+    /**
+     * whether a SQLException in the cause chain of the error is transient
+     *
+     * @param error
+     * @return
+     */
+    public boolean isTransient(Throwable error) {
+        // cause chains may loop, depth is bounded
+        Throwable cause = error;
+        for (int depth = 0; cause != null && depth < 32; depth++) {
+            if (cause instanceof SQLTransientException) return true;
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && transientStates.contains(state)) return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * whether the attempt failed by the error is followed by another one
+     *
+     * @param error
+     * @param attempt failed attempt, starting from 1
+     * @return
+     */
+    boolean canRetry(Throwable error, int attempt) {
+        return attempt < maxAttempts && isTransient(error);
+    }
+
+    /**
+     * random delay before the attempt following the failed one
+     *
+     * @param attempt failed attempt, starting from 1
+     * @return
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt - 1, 30);
+        if (ceiling < 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
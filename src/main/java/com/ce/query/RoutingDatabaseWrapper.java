@@ -0,0 +1,150 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DatabaseWrapper routing reads to replicas. <br>
+ * <code>executeReadOnly</code>, and reads of Query objects created by <code>Query.with()</code> outside a transaction,
+ * get a connection of the replica with least outstanding executions. Everything else, and every read nested in
+ * <code>execute</code> or <code>transaction</code>, runs on the primary.
+ * After a thread writes on the primary, its reads stay on the primary for the sticky window,
+ * so it reads its own writes even if replicas lag behind.
+ * <code>
+ * RoutingDatabaseWrapper wrapper = new RoutingDatabaseWrapper(primary, replica1, replica2);
+ * wrapper.setStickyMillis(2000);
+ * List<Row> rows = Query.with(wrapper).table("people").all();
+ * </code>
+ */
+public class RoutingDatabaseWrapper extends DatabaseWrapper {
+
+    private final Replica[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // replica of the connection opened by current thread, null for primary
+    private final ThreadLocal<Replica> threadLocalReplica = new ThreadLocal<>();
+    // System.nanoTime() of the last write of current thread on primary
+    private final ThreadLocal<Long> threadLocalLastWrite = new ThreadLocal<>();
+
+    private volatile long stickyNanos = 0;
+
+    public RoutingDatabaseWrapper(DataSource primary, DataSource... replicas) {
+        super(primary);
+        this.replicas = new Replica[replicas == null ? 0 : replicas.length];
+        for (int i = 0; i < this.replicas.length; i++) {
+            if (replicas[i] == null) {
+                throw new QueryException("replica data source is required");
+            }
+            this.replicas[i] = new Replica(replicas[i]);
+        }
+    }
+
+    /**
+     * time reads of a thread stay on the primary after it wrote, 0 disables it, it is the default
+     *
+     * @param stickyMillis
+     */
+    public void setStickyMillis(long stickyMillis) {
+        if (stickyMillis < 0)
+            throw new QueryException("sticky time must not be negative");
+        this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(stickyMillis);
+    }
+
+    public long getStickyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stickyNanos);
+    }
+
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    /**
+     * executions running on the replica
+     *
+     * @param index
+     * @return
+     */
+    public int getOutstanding(int index) {
+        return replicas[index].outstanding.get();
+    }
+
+    @Override
+    protected Connection getConnection(boolean readOnly) throws SQLException {
+        if (!readOnly || replicas.length == 0 || _isSticky()) {
+            return super.getConnection(false);
+        }
+
+        Replica replica = _leastOutstanding();
+        replica.outstanding.incrementAndGet();
+        try {
+            Connection connection = replica.dataSource.getConnection();
+            threadLocalReplica.set(replica);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            replica.outstanding.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void releaseConnection(Connection connection, boolean readOnly) throws SQLException {
+        Replica replica = threadLocalReplica.get();
+        threadLocalReplica.remove();
+
+        try {
+            super.releaseConnection(connection, readOnly);
+        } finally {
+            if (replica != null) {
+                replica.outstanding.decrementAndGet();
+            } else if (!readOnly && stickyNanos > 0) {
+                // the execution may have written, it ends when the connection is released
+                threadLocalLastWrite.set(System.nanoTime());
+            }
+        }
+    }
+
+    private boolean _isSticky() {
+        Long lastWrite = threadLocalLastWrite.get();
+        if (lastWrite == null) return false;
+
+        if (System.nanoTime() - lastWrite < stickyNanos) return true;
+
+        threadLocalLastWrite.remove();
+        return false;
+    }
+
+    /**
+     * replica with least outstanding executions, ties are taken in turn
+     *
+     * @return
+     */
+    private Replica _leastOutstanding() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+        Replica least = replicas[start];
+        int leastCount = least.outstanding.get();
+
+        for (int i = 1; i < replicas.length && leastCount > 0; i++) {
+            Replica replica = replicas[(start + i) % replicas.length];
+            int count = replica.outstanding.get();
+            if (count < leastCount) {
+                least = replica;
+                leastCount = count;
+            }
+        }
+        return least;
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
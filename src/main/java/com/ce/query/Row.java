@@ -3,18 +3,47 @@ package com.ce.query;
 import com.ce.query.contract.IRow;
 import com.ce.query.converter.DataConverterManager;
 
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
-public class Row implements IRow {
+/**
+ * Row of query result. <br>
+ * Rows extracted from a result set are backed by an array and share one {@link RowSchema},
+ * they are copied into a map only when a key outside of the schema is put.
+ */
+public class Row extends AbstractMap<String, Object> implements IRow {
 
     /**
      *
      */
     private static final long serialVersionUID = 2965345640259342192L;
-    private Map<String, Object> data = new HashMap<String, Object>();
+
+    /**
+     * marks a schema key which is removed from this row
+     */
+    private static final Object ABSENT = new Object();
+
+    private RowSchema schema;
+    private Object[] values;
+    private int absentCount = 0;
+
+    // used when row is not backed by schema
+    private Map<String, Object> data;
+
+    public Row() {
+        this.data = new HashMap<String, Object>();
+    }
+
+    Row(RowSchema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
 
     @Override
     public <T> T getAs(String key, Class<T> t) {
@@ -25,61 +54,222 @@ public class Row implements IRow {
 
     @Override
     public int size() {
-        return data.size();
+        if (data != null) return data.size();
+        return values.length - absentCount;
     }
 
     @Override
     public boolean isEmpty() {
-        return data.isEmpty();
+        return size() == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return data.containsKey(key);
-    }
-
-    @Override
-    public boolean containsValue(Object value) {
-        return data.containsValue(value);
+        if (data != null) return data.containsKey(key);
+        int index = schema.indexOf(key);
+        return index >= 0 && values[index] != ABSENT;
     }
 
     @Override
     public Object get(Object key) {
-        return data.get(key);
+        if (data != null) return data.get(key);
+        int index = schema.indexOf(key);
+        if (index < 0) return null;
+        Object value = values[index];
+        return value == ABSENT ? null : value;
     }
 
     @Override
     public Object put(String key, Object value) {
-        return data.put(key, value);
+        if (data != null) return data.put(key, value);
+
+        int index = schema.indexOf(key);
+        if (index < 0) {
+            detach();
+            return data.put(key, value);
+        }
+
+        Object previous = values[index];
+        values[index] = value;
+        if (previous == ABSENT) {
+            absentCount--;
+            return null;
+        }
+        return previous;
     }
 
     @Override
     public Object remove(Object key) {
-        return data.remove(key);
+        if (data != null) return data.remove(key);
+
+        int index = schema.indexOf(key);
+        if (index < 0) return null;
+        return removeAt(index);
     }
 
     @Override
     public void putAll(Map<? extends String, ?> m) {
-        data.putAll(m);
+        for (Entry<? extends String, ?> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
     public void clear() {
-        data.clear();
+        this.data = new HashMap<String, Object>();
+        this.schema = null;
+        this.values = null;
+        this.absentCount = 0;
     }
 
     @Override
-    public Set<String> keySet() {
-        return data.keySet();
+    public Set<Entry<String, Object>> entrySet() {
+        if (data != null) return data.entrySet();
+        return new SchemaEntrySet();
     }
 
-    @Override
-    public Collection<Object> values() {
-        return data.values();
+    /**
+     * copy of this row sharing the same schema, values are not copied deeply
+     *
+     * @return
+     */
+    public Row copy() {
+        if (data != null) {
+            Row row = new Row();
+            row.data.putAll(data);
+            return row;
+        }
+        Row row = new Row(schema, values.clone());
+        row.absentCount = absentCount;
+        return row;
     }
 
-    @Override
-    public Set<Entry<String, Object>> entrySet() {
-        return data.entrySet();
+    /**
+     * schema shared by this row, null if row is not backed by schema
+     *
+     * @return
+     */
+    public RowSchema getSchema() {
+        return data == null ? schema : null;
+    }
+
+    private Object removeAt(int index) {
+        Object previous = values[index];
+        if (previous == ABSENT) return null;
+        values[index] = ABSENT;
+        absentCount++;
+        return previous;
+    }
+
+    /**
+     * copy schema backed values into a map, used when key outside of schema is put
+     */
+    private void detach() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>((int) ((values.length + 1) / 0.75f) + 1);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != ABSENT) {
+                map.put(schema.getLabel(i), values[i]);
+            }
+        }
+        this.data = map;
+        this.schema = null;
+        this.values = null;
+        this.absentCount = 0;
+    }
+
+    private class SchemaEntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return Row.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            final RowSchema iteratedSchema = schema;
+            final Object[] iteratedValues = values;
+
+            return new Iterator<Entry<String, Object>>() {
+                private int next = advance(0);
+                private int last = -1;
+
+                private int advance(int from) {
+                    while (from < iteratedValues.length && iteratedValues[from] == ABSENT) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < iteratedValues.length;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = advance(next + 1);
+                    return new SchemaEntry(iteratedSchema.getLabel(last));
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0) {
+                        throw new IllegalStateException();
+                    }
+                    Row.this.remove(iteratedSchema.getLabel(last));
+                    last = -1;
+                }
+            };
+        }
+    }
+
+    /**
+     * entry reads and writes through the row
+     */
+    private class SchemaEntry implements Entry<String, Object> {
+
+        private final String key;
+
+        SchemaEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return Row.this.get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return Row.this.put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
     }
 }
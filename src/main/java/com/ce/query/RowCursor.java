@@ -0,0 +1,115 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy iterator over an open result set. <br>
+ * Rows are extracted one at a time, the underlying statement is closed when the cursor is drained or closed.
+ * <code>
+ * try (RowCursor cursor = Query.connect(connection).table("people").cursor()) {
+ * while (cursor.hasNext()) {
+ * Row row = cursor.next();
+ * }
+ * }
+ * </code>
+ */
+public class RowCursor implements Iterator<Row>, AutoCloseable {
+
+    private final NamedParameterStatement statement;
+    private final ResultSet rs;
+    private final FetchSizeTuner tuner;
+    private RowSchema schema;
+    private Row next;
+    private boolean closed = false;
+    private Runnable onClose;
+
+    RowCursor(NamedParameterStatement statement, ResultSet rs) {
+        this(statement, rs, null);
+    }
+
+    RowCursor(NamedParameterStatement statement, ResultSet rs, FetchSizeTuner tuner) {
+        this.statement = statement;
+        this.rs = rs;
+        this.tuner = tuner;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (closed) return false;
+
+        try {
+            if (rs.next()) {
+                if (schema == null) {
+                    schema = RowSchema.of(rs.getMetaData());
+                }
+                next = schema.read(rs);
+                if (tuner != null) {
+                    tuner.sample(next, rs);
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new QueryException("SQL Exception", e);
+        }
+
+        // drained, release the statement as soon as possible
+        close();
+        return false;
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * action run once after result set and statement are closed
+     *
+     * @param action
+     */
+    void onClose(Runnable action) {
+        this.onClose = action;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * close result set and statement, can be called multiple times
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        next = null;
+
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ce.query;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory of reflection free bean mappers, mappers are created once per class.
+ * <code>
+ * List<People> peoples = Query.connect(connection)
+ * .table("people")
+ * .all(RowMappers.forClass(People.class));
+ * </code>
+ */
+public final class RowMappers {
+
+    private static final ConcurrentHashMap<Class<?>, BeanRowMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private RowMappers() {
+    }
+
+    /**
+     * mapper of the bean class, which must have a default constructor
+     *
+     * @param type
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> forClass(Class<T> type) {
+        BeanRowMapper<?> mapper = MAPPERS.get(type);
+        if (mapper == null) {
+            mapper = new BeanRowMapper<>(type);
+            BeanRowMapper<?> previous = MAPPERS.putIfAbsent(type, mapper);
+            if (previous != null) {
+                mapper = previous;
+            }
+        }
+        return (BeanRowMapper<T>) mapper;
+    }
+}
@@ -0,0 +1,123 @@
+package com.ce.query;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column labels of a result set, resolved once and shared by all rows extracted from it. <br>
+ * Labels are lower cased, duplicated labels keep the first column.
+ */
+public final class RowSchema {
+
+    private final String[] labels;
+    private final int[] columnIndexes;
+    private final Map<String, Integer> indexes;
+
+    private RowSchema(String[] labels, int[] columnIndexes, Map<String, Integer> indexes) {
+        this.labels = labels;
+        this.columnIndexes = columnIndexes;
+        this.indexes = indexes;
+    }
+
+    /**
+     * resolve schema from result set meta data
+     *
+     * @param meta
+     * @return
+     * @throws SQLException
+     */
+    public static RowSchema of(ResultSetMetaData meta) throws SQLException {
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        int[] columnIndexes = new int[count];
+        Map<String, Integer> indexes = new HashMap<>((int) (count / 0.75f) + 1);
+        int size = 0;
+
+        for (int i = 1; i <= count; i++) {
+            String label = meta.getColumnLabel(i).toLowerCase();
+
+            /*
+            sql query allows multi columns with same name, we can add table name before the column name
+            to make it more clear, but still can not prevent name duplication, and will cause more format
+            trouble.
+            example: select id, username as id, created_at as id from account;
+            this query has 3 id are listed, and none of them are same, even with table name, we can not
+            identify one from another.
+            also, in ResultSet class, these columns are identified by index, while retrieve data by name will only
+            return the first found one.
+            So, we keep the same pattern here. Always use the first found value while has duplicated key.
+            also, developer should be informed by this information.
+             */
+            // if label is added, ignore this column
+            if (indexes.containsKey(label)) continue;
+
+            indexes.put(label, size);
+            labels[size] = label;
+            columnIndexes[size] = i;
+            size++;
+        }
+
+        if (size < count) {
+            String[] uniqueLabels = new String[size];
+            int[] uniqueColumnIndexes = new int[size];
+            System.arraycopy(labels, 0, uniqueLabels, 0, size);
+            System.arraycopy(columnIndexes, 0, uniqueColumnIndexes, 0, size);
+            labels = uniqueLabels;
+            columnIndexes = uniqueColumnIndexes;
+        }
+
+        return new RowSchema(labels, columnIndexes, indexes);
+    }
+
+    /**
+     * read current row of result set into a row sharing this schema
+     *
+     * @param rs
+     * @return
+     * @throws SQLException
+     */
+    public Row read(ResultSet rs) throws SQLException {
+        Object[] values = new Object[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            values[i] = rs.getObject(columnIndexes[i]);
+        }
+        return new Row(this, values);
+    }
+
+    /**
+     * number of unique labels
+     *
+     * @return
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * index of the label in row values, -1 if not found
+     *
+     * @param label
+     * @return
+     */
+    public int indexOf(Object label) {
+        Integer index = indexes.get(label);
+        return index == null ? -1 : index;
+    }
+
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    /**
+     * 1 based result set column index of the label at given index
+     *
+     * @param index
+     * @return
+     */
+    public int getColumnIndex(int index) {
+        return columnIndexes[index];
+    }
+}
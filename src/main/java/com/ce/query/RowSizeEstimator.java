@@ -0,0 +1,64 @@
+package com.ce.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * rough estimation of heap bytes used by row values, used to size fetches and caches.
+ */
+final class RowSizeEstimator {
+
+    static final int OBJECT_HEADER = 16;
+    static final int REFERENCE = 8;
+
+    private RowSizeEstimator() {
+    }
+
+    /**
+     * estimated bytes of a row, including its values
+     *
+     * @param row
+     * @return
+     */
+    static long estimate(Map<String, Object> row) {
+        long size = OBJECT_HEADER + OBJECT_HEADER + (long) REFERENCE * row.size();
+        for (Object value : row.values()) {
+            size += estimateValue(value);
+        }
+        return size;
+    }
+
+    /**
+     * estimated bytes of a single value
+     *
+     * @param value
+     * @return
+     */
+    static long estimateValue(Object value) {
+        if (value == null) return 0;
+
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_HEADER + ((byte[]) value).length;
+        }
+        if (value instanceof char[]) {
+            return OBJECT_HEADER + 2L * ((char[]) value).length;
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 64;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16;
+        }
+        if (value instanceof java.util.Date) {
+            return 32;
+        }
+        return 32;
+    }
+}
@@ -4,13 +4,36 @@ public class SQLHelper {
 	public static String[] generateArrayOfNamedParameters(String name, int quantity) {
 		String[] names = new String[quantity];
 		
+		// same as String.format("%s__%04d"), which is slow for long lists
+		StringBuilder builder = new StringBuilder(name.length() + 8).append(name).append("__");
+		int prefix = builder.length();
 		for(int i=0; i<quantity; i++) {
-			names[i] = String.format("%s__%04d", name, i);
+			builder.setLength(prefix);
+			String index = Integer.toString(i);
+			for(int j=index.length(); j<4; j++) {
+				builder.append('0');
+			}
+			names[i] = builder.append(index).toString();
 		}
 		
 		return names;
 	}
 	
+	/**
+	 * name of the param at index, e.g. name__0001
+	 * @param name
+	 * @param index
+	 * @return
+	 */
+	public static String namedParameter(String name, int index) {
+		StringBuilder builder = new StringBuilder(name.length() + 8).append(name).append("__");
+		String digits = Integer.toString(index);
+		for(int j=digits.length(); j<4; j++) {
+			builder.append('0');
+		}
+		return builder.append(digits).toString();
+	}
+
 	public static String generateArrayOfNamedParameterString(String name, int quantity) {
 		String[] names = generateArrayOfNamedParameters(name, quantity);
 		
@@ -25,6 +48,25 @@ public class SQLHelper {
 		return buffer.toString();
 	}
 
+	/**
+	 * named parameters of each row of a multi-row statement, e.g. name__0001 for column name of second row
+	 * @param attributes
+	 * @param rows
+	 * @return names indexed by row and attribute
+	 */
+	public static String[][] generateRowsOfNamedParameters(String[] attributes, int rows) {
+		String[][] names = new String[rows][attributes.length];
+
+		for(int i=0; i<attributes.length; i++) {
+			String[] column = generateArrayOfNamedParameters(attributes[i], rows);
+			for(int j=0; j<rows; j++) {
+				names[j][i] = column[j];
+			}
+		}
+
+		return names;
+	}
+
 	public static String normalizeSearchKey(String searchKey) {
 		if(searchKey == null || searchKey.trim().length() == 0) {
 			return null;
@@ -0,0 +1,41 @@
+package com.ce.query;
+
+import java.util.List;
+
+/**
+ * One page of a keyset pagination, created by {@link Query#seekPage()}.
+ * <code>
+ * SeekPage page = Query.connect(connection)
+ * .table("people")
+ * .seekAfter(new String[]{"age desc", "id"}, token, 20)
+ * .seekPage();
+ * String next = page.getNextToken();
+ * </code>
+ */
+public final class SeekPage {
+
+    private final List<Row> rows;
+    private final String nextToken;
+
+    SeekPage(List<Row> rows, String nextToken) {
+        this.rows = rows;
+        this.nextToken = nextToken;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * opaque token of the next page, pass it to <code>seekAfter()</code> with the same order columns
+     *
+     * @return null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.ce.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Light scanner of table names in SQL, used to invalidate cached results. <br>
+ * Names are lower cased without schema and quotes. It is not a parser, it only follows
+ * <code>from</code>, <code>join</code>, <code>into</code>, <code>update</code> and <code>table</code>.
+ */
+final class SqlTables {
+
+    private static final Pattern TOKEN = Pattern.compile("'(?:[^']|'')*'|\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\]|[\\w$.]+|\\S");
+
+    // words which can follow a table, so they are not taken as alias
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "where", "on", "using", "join", "inner", "left", "right", "full", "cross", "outer", "natural",
+            "group", "order", "having", "union", "intersect", "except", "minus", "limit", "offset", "fetch",
+            "set", "values", "select", "for", "window", "connect", "start"));
+
+    private static final Set<String> IF_EXISTS = new HashSet<>(Arrays.asList("if", "not", "exists"));
+
+    private SqlTables() {
+    }
+
+    /**
+     * tables read by the statement
+     *
+     * @param sql
+     * @return
+     */
+    static Set<String> read(String sql) {
+        List<String> tokens = tokenize(sql);
+        Set<String> tables = new LinkedHashSet<>();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if ("from".equals(token) || "join".equals(token)) {
+                i = readTableList(tokens, i + 1, tables);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * tables written by the statement
+     *
+     * @param sql
+     * @return empty if it only reads, null if written tables are unknown, e.g. a procedure call
+     */
+    static Set<String> written(String sql) {
+        List<String> tokens = tokenize(sql);
+        Set<String> tables = new LinkedHashSet<>();
+
+        // script of several statements
+        int start = 0;
+        for (int i = 0; i <= tokens.size(); i++) {
+            if (i < tokens.size() && !";".equals(tokens.get(i))) continue;
+
+            Set<String> written = written(tokens.subList(start, i));
+            if (written == null) return null;
+            tables.addAll(written);
+            start = i + 1;
+        }
+        return tables;
+    }
+
+    private static Set<String> written(List<String> tokens) {
+        Set<String> tables = new LinkedHashSet<>();
+        if (tokens.isEmpty()) return tables;
+
+        String first = tokens.get(0);
+        String after;
+        switch (first) {
+            case "select":
+            case "with":
+            case "(":
+                return tables;
+            case "update":
+                after = "update";
+                break;
+            case "insert":
+            case "merge":
+            case "replace":
+                after = "into";
+                break;
+            case "delete":
+                after = "from";
+                break;
+            case "truncate":
+            case "alter":
+            case "drop":
+            case "create":
+                after = "table";
+                break;
+            default:
+                return null;
+        }
+
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            if (!after.equals(tokens.get(i))) continue;
+
+            int next = i + 1;
+            // drop table if exists, create table if not exists
+            while (next < tokens.size() - 1 && IF_EXISTS.contains(tokens.get(next))) next++;
+
+            String name = tokens.get(next);
+            if (!isName(name)) return null;
+            tables.add(name(name));
+
+            // only oracle insert all has several targets
+            if (!"into".equals(after)) break;
+        }
+
+        if (tables.isEmpty() && !"create".equals(first)) return null;
+        return tables;
+    }
+
+    private static int readTableList(List<String> tokens, int i, Set<String> tables) {
+        while (i < tokens.size()) {
+            String token = tokens.get(i);
+            // sub query is scanned by the caller
+            if (!isName(token) || KEYWORDS.contains(token)) return i - 1;
+
+            tables.add(name(token));
+            i++;
+
+            // skip alias
+            if (i < tokens.size() && "as".equals(tokens.get(i))) i++;
+            if (i < tokens.size() && isName(tokens.get(i)) && !KEYWORDS.contains(tokens.get(i))) i++;
+
+            if (i < tokens.size() && ",".equals(tokens.get(i))) {
+                i++;
+            } else {
+                return i - 1;
+            }
+        }
+        return i;
+    }
+
+    private static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(sql);
+        while (matcher.find()) {
+            String token = matcher.group();
+            // string literals never name a table
+            if (token.charAt(0) == '\'') continue;
+            tokens.add(token.charAt(0) == '"' || token.charAt(0) == '`' || token.charAt(0) == '['
+                    ? token : token.toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    private static boolean isName(String token) {
+        char c = token.charAt(0);
+        return Character.isLetter(c) || c == '_' || c == '"' || c == '`' || c == '[';
+    }
+
+    private static String name(String token) {
+        String name = token.substring(token.lastIndexOf('.') + 1);
+        char c = name.charAt(0);
+        if (c == '"' || c == '`' || c == '[') {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ce.query;
+
+import com.ce.query.grammar.IGrammar;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Values of a large <code>whereIn</code> list staged into a temporary table, so the statement selects them
+ * by a sub query instead of binding every value. <br>
+ * The table is created right before the statement runs and dropped after it.
+ */
+final class StagedInList {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final String table;
+    private final String typeName;
+    private final Object[] values;
+
+    StagedInList(String table, String typeName, Object[] values) {
+        this.table = table;
+        this.typeName = typeName;
+        this.values = values;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    void create(Connection connection, IGrammar grammar) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(grammar.createTemporaryInTable(table, typeName));
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("insert into " + table + " (v) values (?)")) {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(1, values[i]);
+                statement.addBatch();
+                if ((i + 1) % INSERT_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (values.length % INSERT_BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        } catch (SQLException e) {
+            drop(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * drop the table, failure is only printed so it does not hide the error of the statement
+     *
+     * @param connection
+     */
+    void drop(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table " + table);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
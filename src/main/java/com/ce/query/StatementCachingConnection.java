@@ -0,0 +1,223 @@
+package com.ce.query;
+
+import com.ce.query.cache.CacheStats;
+import com.ce.query.cache.LruCache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Connection proxy which keeps closed prepared statements in a per connection LRU cache. <br>
+ * <code>prepareStatement(String)</code> and <code>prepareStatement(String, int, int)</code> check out a cached
+ * statement with cleared parameters, and max rows, fetch size, fetch direction, query timeout and max field size
+ * restored to the values it was prepared with,
+ * closing the returned statement puts it back into the cache. All cached statements are closed
+ * together with the connection.
+ */
+class StatementCachingConnection implements InvocationHandler {
+
+    private final Connection target;
+    private final LruCache<String, PooledStatement> cache;
+    private Connection proxy;
+
+    private StatementCachingConnection(Connection target, int size, CacheStats stats) {
+        this.target = target;
+        this.cache = new LruCache<>(size, stats, pooled -> closeQuietly(pooled.statement));
+    }
+
+    static Connection wrap(Connection connection, int size, CacheStats stats) {
+        StatementCachingConnection handler = new StatementCachingConnection(connection, size, stats);
+        handler.proxy = (Connection) Proxy.newProxyInstance(
+                StatementCachingConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler
+        );
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+
+        if ("equals".equals(name) && args != null && args.length == 1) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(name) && args == null) {
+            return System.identityHashCode(proxy);
+        }
+        if ("prepareStatement".equals(name) && args != null && args.length == 1) {
+            return prepareStatement((String) args[0], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+        if ("prepareStatement".equals(name) && args != null && args.length == 3
+                && args[1] instanceof Integer && args[2] instanceof Integer) {
+            return prepareStatement((String) args[0], (Integer) args[1], (Integer) args[2]);
+        }
+        if ("close".equals(name) && args == null) {
+            cache.invalidateAll();
+        }
+
+        return invokeTarget(target, method, args);
+    }
+
+    private PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        boolean isDefault = resultSetType == ResultSet.TYPE_FORWARD_ONLY
+                && resultSetConcurrency == ResultSet.CONCUR_READ_ONLY;
+        String key = isDefault ? sql : sql + "\n-- " + resultSetType + ":" + resultSetConcurrency;
+        PooledStatement pooled = cache.take(key);
+
+        if (pooled != null && pooled.statement.isClosed()) {
+            pooled = null;
+        }
+
+        if (pooled != null) {
+            // reset state left by previous use, a statement which can not be reset is replaced
+            try {
+                pooled.reset();
+            } catch (SQLException e) {
+                closeQuietly(pooled.statement);
+                pooled = null;
+            }
+        }
+
+        if (pooled == null) {
+            pooled = new PooledStatement(isDefault
+                    ? target.prepareStatement(sql)
+                    : target.prepareStatement(sql, resultSetType, resultSetConcurrency));
+        }
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCachingConnection.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedStatement(key, pooled)
+        );
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * prepared statement checked out from cache, close returns it to the cache
+     */
+    private class CachedStatement implements InvocationHandler {
+
+        private final String key;
+        private final PooledStatement pooled;
+        private final PreparedStatement statement;
+        private boolean closed = false;
+
+        CachedStatement(String key, PooledStatement pooled) {
+            this.key = key;
+            this.pooled = pooled;
+            this.statement = pooled.statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if ("equals".equals(name) && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            if ("isClosed".equals(name) && args == null) {
+                return closed || statement.isClosed();
+            }
+            if ("close".equals(name) && args == null) {
+                if (!closed) {
+                    closed = true;
+                    release();
+                }
+                return null;
+            }
+            if ("getConnection".equals(name) && args == null) {
+                return StatementCachingConnection.this.proxy;
+            }
+            if (closed) {
+                throw new SQLException("statement is closed");
+            }
+
+            return invokeTarget(statement, method, args);
+        }
+
+        private void release() throws SQLException {
+            if (statement.isClosed()) return;
+
+            if (target.isClosed()) {
+                statement.close();
+                return;
+            }
+
+            // discard unfinished batch before the statement is reused
+            statement.clearBatch();
+            cache.put(key, pooled);
+        }
+    }
+
+    /**
+     * cached statement with the settings it was prepared with
+     */
+    private static final class PooledStatement {
+
+        private final PreparedStatement statement;
+        private final int maxRows;
+        private final int fetchSize;
+        private final int fetchDirection;
+        private final int queryTimeout;
+        private final int maxFieldSize;
+
+        PooledStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.maxRows = statement.getMaxRows();
+            this.fetchSize = statement.getFetchSize();
+            this.fetchDirection = statement.getFetchDirection();
+            this.queryTimeout = statement.getQueryTimeout();
+            this.maxFieldSize = statement.getMaxFieldSize();
+        }
+
+        /**
+         * clear parameters and restore settings changed by the previous user
+         *
+         * @throws SQLException
+         */
+        void reset() throws SQLException {
+            statement.clearParameters();
+            if (statement.getMaxRows() != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+            if (statement.getFetchSize() != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+            if (statement.getFetchDirection() != fetchDirection) {
+                statement.setFetchDirection(fetchDirection);
+            }
+            if (statement.getQueryTimeout() != queryTimeout) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            if (statement.getMaxFieldSize() != maxFieldSize) {
+                statement.setMaxFieldSize(maxFieldSize);
+            }
+        }
+    }
+}
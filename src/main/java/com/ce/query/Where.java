@@ -0,0 +1,421 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Group of where criteria, joined by <code>and</code>, or by <code>or</code> for a group created by
+ * <code>whereAny()</code>. Groups can be nested, values are bound as generated named parameters.
+ * <code>
+ * Query.connect(connection)
+ * .table("people")
+ * .where("age", ">", 18)
+ * .whereAny(any -> any
+ * .isNull("deleted_at")
+ * .all(all -> all.where("status", "archived").between("updated_at", from, to)))
+ * .all();
+ * </code>
+ */
+public final class Where {
+
+    // longer lists are split or staged, their length is not worth reserving
+    private static final int MAX_ESTIMATED_IN_LIST = 1024;
+
+    private final boolean any;
+    private final List<Node> nodes;
+
+    Where(boolean any) {
+        this(any, new ArrayList<>());
+    }
+
+    private Where(boolean any, List<Node> nodes) {
+        this.any = any;
+        this.nodes = nodes;
+    }
+
+    /**
+     * add raw criteria, it is rendered as it is
+     *
+     * @param raw
+     * @return
+     */
+    public Where where(String raw) {
+        nodes.add(new Raw(raw));
+        return this;
+    }
+
+    /**
+     * add <code>column = value</code>, or <code>column is null</code> for null value
+     *
+     * @param column
+     * @param value
+     * @return
+     */
+    public Where where(String column, Object value) {
+        return where(column, "=", value);
+    }
+
+    /**
+     * add comparison of column and value
+     *
+     * @param column
+     * @param operator one of <code>=, &lt;&gt;, !=, &lt;, &lt;=, &gt;, &gt;=</code>
+     * @param value    null is only taken by <code>=</code> and <code>&lt;&gt;</code>, as is (not) null
+     * @return
+     */
+    public Where where(String column, String operator, Object value) {
+        String op = Compare.operator(operator);
+        if (value == null) {
+            if ("=".equals(op)) return isNull(column);
+            if ("<>".equals(op)) return isNotNull(column);
+            throw new QueryException(String.format("null can not be compared by %s", operator));
+        }
+        nodes.add(new Compare(column, op, value));
+        return this;
+    }
+
+    public Where between(String column, Object from, Object to) {
+        nodes.add(new Between(column, from, to));
+        return this;
+    }
+
+    public Where isNull(String column) {
+        nodes.add(new IsNull(column, false));
+        return this;
+    }
+
+    public Where isNotNull(String column) {
+        nodes.add(new IsNull(column, true));
+        return this;
+    }
+
+    /**
+     * add in list criteria, empty list matches nothing
+     *
+     * @param column
+     * @param values
+     * @return
+     */
+    public Where in(String column, Object[] values) {
+        nodes.add(new In(column, values));
+        return this;
+    }
+
+    /**
+     * add nested group joined by <code>or</code>
+     *
+     * @param group
+     * @return
+     */
+    public Where any(Consumer<Where> group) {
+        return _group(true, group);
+    }
+
+    /**
+     * add nested group joined by <code>and</code>, used in a group of <code>any()</code>
+     *
+     * @param group
+     * @return
+     */
+    public Where all(Consumer<Where> group) {
+        return _group(false, group);
+    }
+
+    private Where _group(boolean any, Consumer<Where> group) {
+        Where where = new Where(any);
+        group.accept(where);
+        nodes.add(where.new Group());
+        return this;
+    }
+
+    boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * replace the in list criteria of the same column, or add it
+     *
+     * @param column
+     * @param values
+     */
+    void putIn(String column, Object[] values) {
+        In in = new In(column, values);
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (node instanceof In && ((In) node).column.equals(column)) {
+                nodes.set(i, in);
+                return;
+            }
+        }
+        nodes.add(in);
+    }
+
+    /**
+     * add <code>column = :name</code> bound to a param named by the column itself
+     *
+     * @param column
+     */
+    void whereNamed(String column) {
+        nodes.add(new Named(column));
+    }
+
+    void whereLike(String column, String param) {
+        nodes.add(new Like(column, param));
+    }
+
+    Where copy() {
+        return new Where(any, new ArrayList<>(nodes));
+    }
+
+    /**
+     * new group holding criteria of this group in parentheses, so criteria appended after it
+     * apply to all of them
+     *
+     * @return
+     */
+    Where enclose() {
+        Where enclosed = new Where(false);
+        if (!isEmpty()) {
+            enclosed.nodes.add(copy().new Group());
+        }
+        return enclosed;
+    }
+
+    /**
+     * append criteria of this group as where clause
+     *
+     * @param sql
+     * @param query
+     * @return whether anything was appended
+     */
+    boolean renderWhere(StringBuilder sql, Query query) {
+        boolean first = true;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (node.isEmpty()) continue;
+            sql.append(first ? " where " : " and ");
+            node.render(sql, query);
+            first = false;
+        }
+        return !first;
+    }
+
+    /**
+     * approximate length of rendered criteria, used to size the sql builder
+     *
+     * @return
+     */
+    int estimate() {
+        int length = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            length += nodes.get(i).estimate() + 8;
+        }
+        return length;
+    }
+
+    //============= nodes
+
+    abstract static class Node {
+        abstract void render(StringBuilder sql, Query query);
+
+        abstract int estimate();
+
+        boolean isEmpty() {
+            return false;
+        }
+    }
+
+    private final class Group extends Node {
+        @Override
+        void render(StringBuilder sql, Query query) {
+            String joint = any ? " or " : " and ";
+            boolean first = true;
+            sql.append(" (");
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                if (node.isEmpty()) continue;
+                if (!first) sql.append(joint);
+                node.render(sql, query);
+                first = false;
+            }
+            sql.append(" ) ");
+        }
+
+        @Override
+        int estimate() {
+            return Where.this.estimate() + 4;
+        }
+
+        @Override
+        boolean isEmpty() {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!nodes.get(i).isEmpty()) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Raw extends Node {
+        private final String raw;
+
+        Raw(String raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            // raw criteria may contain or, it must not take in the criteria around it
+            sql.append(" (").append(raw).append(") ");
+        }
+
+        @Override
+        int estimate() {
+            return raw.length() + 4;
+        }
+    }
+
+    private static final class Named extends Node {
+        private final String column;
+
+        Named(String column) {
+            this.column = column;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            sql.append(' ').append(column).append(" = :").append(column).append(' ');
+        }
+
+        @Override
+        int estimate() {
+            return column.length() * 2 + 6;
+        }
+    }
+
+    private static final class Compare extends Node {
+        private final String column;
+        private final String operator;
+        private final Object value;
+
+        Compare(String column, String operator, Object value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        static String operator(String operator) {
+            String op = operator == null ? "" : operator.trim();
+            switch (op) {
+                case "=":
+                case "<>":
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                    return op;
+                case "!=":
+                    return "<>";
+                default:
+                    throw new QueryException(String.format("unsupported operator %s", operator));
+            }
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            sql.append(' ').append(column).append(' ').append(operator).append(" :");
+            sql.append(query._bindWhereParam(value)).append(' ');
+        }
+
+        @Override
+        int estimate() {
+            return column.length() + 20;
+        }
+    }
+
+    private static final class Between extends Node {
+        private final String column;
+        private final Object from;
+        private final Object to;
+
+        Between(String column, Object from, Object to) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            sql.append(' ').append(column).append(" between :").append(query._bindWhereParam(from));
+            sql.append(" and :").append(query._bindWhereParam(to)).append(' ');
+        }
+
+        @Override
+        int estimate() {
+            return column.length() + 40;
+        }
+    }
+
+    private static final class IsNull extends Node {
+        private final String column;
+        private final boolean not;
+
+        IsNull(String column, boolean not) {
+            this.column = column;
+            this.not = not;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            sql.append(' ').append(column).append(not ? " is not null " : " is null ");
+        }
+
+        @Override
+        int estimate() {
+            return column.length() + 14;
+        }
+    }
+
+    private static final class In extends Node {
+        private final String column;
+        private final Object[] values;
+
+        In(String column, Object[] values) {
+            this.column = column;
+            this.values = values;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            query._renderIn(sql, column, values);
+        }
+
+        @Override
+        int estimate() {
+            int size = values == null ? 0 : Math.min(values.length, MAX_ESTIMATED_IN_LIST);
+            return 16 + (column.length() + 11) * size;
+        }
+    }
+
+    private static final class Like extends Node {
+        private final String column;
+        private final String param;
+
+        Like(String column, String param) {
+            this.column = column;
+            this.param = param;
+        }
+
+        @Override
+        void render(StringBuilder sql, Query query) {
+            sql.append(" lower( ").append(column).append(" ) like :").append(param).append(' ');
+        }
+
+        @Override
+        int estimate() {
+            return column.length() + param.length() + 20;
+        }
+    }
+}
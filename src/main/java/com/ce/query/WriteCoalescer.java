@@ -0,0 +1,292 @@
+package com.ce.query;
+
+import com.ce.query.contract.IDatabaseExecution;
+import com.ce.query.exception.QueryException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit of small writes submitted by many threads. <br>
+ * One writer thread drains the bounded queue into one transaction per flush, a flush is started when
+ * <code>maxBatchSize</code> writes are waiting, or <code>maxLatencyMillis</code> after the first of them.
+ * Consecutive writes of the same SQL are executed as one JDBC batch. Futures complete after the commit.
+ * If a flush fails, its writes are retried one transaction each, so a bad write only fails its own future.
+ * <code>
+ * try (WriteCoalescer coalescer = new WriteCoalescer(databaseWrapper, 200, 5, 10000)) {
+ * CompletableFuture<Integer> count = coalescer.submit(
+ * "insert into people (id, name) values (:id, :name)", row);
+ * }
+ * </code>
+ */
+public class WriteCoalescer implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 5;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final long CLOSE_CHECK_MILLIS = 100;
+
+    private final DatabaseWrapper wrapper;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final BlockingQueue<Write<?>> queue;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+
+    public WriteCoalescer(DatabaseWrapper wrapper) {
+        this(wrapper, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY_MILLIS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param wrapper          writes are committed by <code>transaction()</code> of the wrapper
+     * @param maxBatchSize     max writes of one flush
+     * @param maxLatencyMillis max time the first write of a flush waits for others, 0 flushes what is queued
+     * @param queueCapacity    max writes waiting, <code>submit</code> blocks while the queue is full
+     */
+    public WriteCoalescer(DatabaseWrapper wrapper, int maxBatchSize, long maxLatencyMillis, int queueCapacity) {
+        if (wrapper == null)
+            throw new QueryException("database wrapper is required");
+        if (maxBatchSize <= 0)
+            throw new QueryException("max batch size must be positive");
+        if (maxLatencyMillis < 0)
+            throw new QueryException("max latency must not be negative");
+        if (queueCapacity <= 0)
+            throw new QueryException("queue capacity must be positive");
+
+        this.wrapper = wrapper;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.writer = new Thread(this::_run, "database-query-write-coalescer-" + THREAD_COUNT.incrementAndGet());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * submit one statement with named params, consecutive statements of the same SQL are batched
+     *
+     * @param sql
+     * @param params
+     * @return future of the update count, completed after commit
+     */
+    public CompletableFuture<Integer> submit(String sql, Map<String, ?> params) {
+        if (sql == null)
+            throw new QueryException("sql is required");
+        return _submit(new Write<Integer>(sql, params == null ? Collections.emptyMap() : params, null));
+    }
+
+    /**
+     * submit a write operation, it runs in the transaction of a flush together with other writes
+     * and must not commit or close the connection
+     *
+     * @param execution
+     * @param <T>
+     * @return future of the result, completed after commit
+     */
+    public <T> CompletableFuture<T> submit(IDatabaseExecution<T> execution) {
+        if (execution == null)
+            throw new QueryException("execution is required");
+        return _submit(new Write<>(null, null, execution));
+    }
+
+    private <T> CompletableFuture<T> _submit(Write<T> write) {
+        if (closed)
+            throw new QueryException("write coalescer is closed");
+
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.future.completeExceptionally(e);
+        }
+
+        // closed meanwhile, the writer may have drained the queue already
+        if (closed && queue.remove(write)) {
+            write.future.completeExceptionally(new QueryException("write coalescer is closed"));
+        }
+        return write.future;
+    }
+
+    /**
+     * number of transactions committed or failed, retries of single writes included
+     *
+     * @return
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * number of writes completed, successfully or not
+     *
+     * @return
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * stop accepting writes, flush the queued ones and wait for the writer to end
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void _run() {
+        List<Write<?>> batch = new ArrayList<>(maxBatchSize);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                _collect(batch);
+            } catch (InterruptedException e) {
+                // not interrupted by close, flush what is collected and go on
+            }
+
+            if (!batch.isEmpty()) {
+                _flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * wait for the first write, then for more until the batch is full or the latency of the first is reached
+     */
+    private void _collect(List<Write<?>> batch) throws InterruptedException {
+        if (closed) {
+            queue.drainTo(batch, maxBatchSize);
+            return;
+        }
+
+        // wakes up now and then to see whether it is closed
+        Write<?> first = queue.poll(CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) return;
+
+        batch.add(first);
+        long deadline = System.nanoTime() + maxLatencyNanos;
+
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            if (batch.size() >= maxBatchSize) break;
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+
+            Write<?> write = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (write == null) break;
+            batch.add(write);
+        }
+    }
+
+    private void _flush(List<Write<?>> batch) {
+        Object[] results = new Object[batch.size()];
+
+        try {
+            flushCount.incrementAndGet();
+            wrapper.transaction((Connection connection) -> {
+                _execute(connection, batch, results);
+            });
+        } catch (RuntimeException | Error e) {
+            if (batch.size() == 1) {
+                _fail(batch.get(0), e);
+                return;
+            }
+
+            // isolate the failing write
+            for (Write<?> write : batch) {
+                _flush(Collections.singletonList(write));
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            _complete(batch.get(i), results[i]);
+        }
+    }
+
+    private void _execute(Connection connection, List<Write<?>> batch, Object[] results) throws SQLException {
+        int i = 0;
+        while (i < batch.size()) {
+            Write<?> write = batch.get(i);
+
+            if (write.execution != null) {
+                results[i] = write.execution.execute(connection);
+                i++;
+                continue;
+            }
+
+            // consecutive writes of the same sql
+            int end = i + 1;
+            while (end < batch.size() && write.sql.equals(batch.get(end).sql)) {
+                end++;
+            }
+
+            NamedParameterStatement statement = new NamedParameterStatement(connection, write.sql);
+            try {
+                for (int j = i; j < end; j++) {
+                    // every parameter is set, so no value is left over from the previous row
+                    statement.bind(batch.get(j).params, true);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int j = i; j < end; j++) {
+                    results[j] = j - i < counts.length ? counts[j - i] : Statement.SUCCESS_NO_INFO;
+                }
+            } finally {
+                statement.close();
+            }
+            wrapper.tablesWritten(SqlTables.written(write.sql));
+
+            i = end;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void _complete(Write<T> write, Object result) {
+        writeCount.incrementAndGet();
+        write.future.complete((T) result);
+    }
+
+    private void _fail(Write<?> write, Throwable error) {
+        writeCount.incrementAndGet();
+        write.future.completeExceptionally(error);
+    }
+
+    private static final class Write<T> {
+        private final String sql;
+        private final Map<String, ?> params;
+        private final IDatabaseExecution<T> execution;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Write(String sql, Map<String, ?> params, IDatabaseExecution<T> execution) {
+            this.sql = sql;
+            this.params = params;
+            this.execution = execution;
+        }
+    }
+}
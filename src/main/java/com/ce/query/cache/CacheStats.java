@@ -0,0 +1,64 @@
+package com.ce.query.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * thread safe hit / miss / eviction counters of a cache, <br>
+ * one instance can be shared by several caches to report them together.
+ */
+public class CacheStats {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getRequestCount() {
+        return getHitCount() + getMissCount();
+    }
+
+    /**
+     * ratio of hits in all requests, 1.0 if no request yet
+     *
+     * @return
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) getHitCount() / requests;
+    }
+
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%d, misses=%d, evictions=%d, hitRate=%.4f}",
+                getHitCount(), getMissCount(), getEvictionCount(), getHitRate());
+    }
+}
@@ -0,0 +1,332 @@
+package com.ce.query.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * thread safe, size bounded cache which evicts the least recently used entries. <br>
+ * The bound is the total weight of values, each value weighs 1 unless a weigher is given. <br>
+ * Lookups do not lock, they only stamp the access time of the entry. Once the bound is exceeded, the writer
+ * evicts the entries accessed least recently under an eviction lock, a batch at a time
+ * so the entries are not scanned for every write. <br>
+ * Removal listener is called, outside of the lock, for every value leaving the cache by eviction or invalidation.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class LruCache<K, V> {
+
+    // evicted below the bound by this part of it, so a full cache is not scanned for each write
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final ConcurrentHashMap<K, Node<V>> map = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private final CacheStats stats;
+    private final Consumer<? super V> removalListener;
+    private final ToLongFunction<? super V> weigher;
+    private final AtomicLong weight = new AtomicLong();
+    private volatile long maxWeight;
+
+    public LruCache(int maxSize) {
+        this(maxSize, new CacheStats(), null);
+    }
+
+    public LruCache(int maxSize, CacheStats stats, Consumer<? super V> removalListener) {
+        this(maxSize, value -> 1, stats, removalListener);
+    }
+
+    /**
+     * cache bounded by total weight of values, e.g. estimated bytes
+     *
+     * @param maxWeight
+     * @param weigher         weight of a value, must not change while it is cached
+     * @param stats
+     * @param removalListener
+     */
+    public LruCache(long maxWeight, ToLongFunction<? super V> weigher, CacheStats stats, Consumer<? super V> removalListener) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("max size must not be negative");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.stats = stats;
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * get cached value and record hit or miss
+     *
+     * @param key
+     * @return null if not cached
+     */
+    public V get(K key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            stats.recordMiss();
+            return null;
+        }
+        node.touch();
+        stats.recordHit();
+        return node.value;
+    }
+
+    /**
+     * get cached value if it is still valid, invalid value is removed and counted as miss
+     *
+     * @param key
+     * @param valid
+     * @return null if not cached or invalid
+     */
+    public V get(K key, Predicate<? super V> valid) {
+        Node<V> node = map.get(key);
+        if (node != null && !valid.test(node.value)) {
+            if (map.remove(key, node)) {
+                weight.addAndGet(-node.weight);
+            }
+            node = null;
+        }
+
+        if (node == null) {
+            stats.recordMiss();
+            return null;
+        }
+        node.touch();
+        stats.recordHit();
+        return node.value;
+    }
+
+    /**
+     * get cached value, or load and cache it. Concurrent callers of a missing key wait for one load,
+     * the loader must be short and must not use this cache.
+     *
+     * @param key
+     * @param loader value of the key, null is not cached
+     * @return
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        // lookup first, so hits do not lock the bin of the key
+        Node<V> node = map.get(key);
+        if (node != null) {
+            node.touch();
+            stats.recordHit();
+            return node.value;
+        }
+
+        stats.recordMiss();
+        if (maxWeight == 0) {
+            return loader.apply(key);
+        }
+
+        boolean[] loaded = new boolean[1];
+        node = map.computeIfAbsent(key, k -> {
+            V value = loader.apply(k);
+            if (value == null) return null;
+            loaded[0] = true;
+            return new Node<>(value, weigher.applyAsLong(value));
+        });
+        if (node == null) return null;
+
+        if (loaded[0]) {
+            weight.addAndGet(node.weight);
+            List<V> removed = new ArrayList<>(0);
+            trim(removed);
+            notifyRemoval(removed);
+        } else {
+            node.touch();
+        }
+        return node.value;
+    }
+
+    /**
+     * remove the cached value and record hit or miss, used to check out values which can not be shared
+     *
+     * @param key
+     * @return null if not cached
+     */
+    public V take(K key) {
+        Node<V> node = map.remove(key);
+        if (node == null) {
+            stats.recordMiss();
+            return null;
+        }
+        weight.addAndGet(-node.weight);
+        stats.recordHit();
+        return node.value;
+    }
+
+    /**
+     * cache the value, replaced value is handed to removal listener
+     *
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        List<V> removed = new ArrayList<>(1);
+        if (maxWeight == 0) {
+            removed.add(value);
+        } else {
+            Node<V> node = new Node<>(value, weigher.applyAsLong(value));
+            Node<V> previous = map.put(key, node);
+            weight.addAndGet(previous == null ? node.weight : node.weight - previous.weight);
+            if (previous != null && previous.value != value) {
+                removed.add(previous.value);
+            }
+            trim(removed);
+        }
+        notifyRemoval(removed);
+    }
+
+    /**
+     * remove the value from cache without calling removal listener
+     *
+     * @param key
+     * @return removed value or null
+     */
+    public V remove(K key) {
+        Node<V> node = map.remove(key);
+        if (node == null) return null;
+        weight.addAndGet(-node.weight);
+        return node.value;
+    }
+
+    /**
+     * remove all values, each of them is handed to removal listener
+     */
+    public void invalidateAll() {
+        List<V> removed = new ArrayList<>();
+        Iterator<Map.Entry<K, Node<V>>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Node<V>> entry = iterator.next();
+            Node<V> node = entry.getValue();
+            if (map.remove(entry.getKey(), node)) {
+                weight.addAndGet(-node.weight);
+                removed.add(node.value);
+            }
+        }
+        notifyRemoval(removed);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return (int) Math.min(maxWeight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * total weight of cached values, same as size if no weigher is given
+     *
+     * @return
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * change the bound of cache, exceeded values are evicted
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        setMaxWeight(maxSize);
+    }
+
+    /**
+     * change the bound of cache, exceeded values are evicted
+     *
+     * @param maxWeight
+     */
+    public void setMaxWeight(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("max size must not be negative");
+        }
+        this.maxWeight = maxWeight;
+        List<V> removed = new ArrayList<>();
+        trim(removed);
+        notifyRemoval(removed);
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * evict entries accessed least recently, until the weight is a batch below the bound
+     *
+     * @param removed
+     */
+    private void trim(List<V> removed) {
+        if (weight.get() <= maxWeight) return;
+
+        synchronized (evictionLock) {
+            long bound = maxWeight;
+            if (weight.get() <= bound) return;
+
+            // access times are captured, they keep changing while sorting
+            List<Candidate<K, V>> candidates = new ArrayList<>(map.size());
+            for (Map.Entry<K, Node<V>> entry : map.entrySet()) {
+                candidates.add(new Candidate<>(entry.getKey(), entry.getValue()));
+            }
+            candidates.sort((a, b) -> Long.compare(a.accessed, b.accessed));
+
+            long target = bound - bound / EVICTION_BATCH_DIVISOR;
+            for (int i = 0; i < candidates.size() && weight.get() > target; i++) {
+                Node<V> node = candidates.get(i).node;
+                // replaced or removed meanwhile
+                if (!map.remove(candidates.get(i).key, node)) continue;
+
+                weight.addAndGet(-node.weight);
+                removed.add(node.value);
+                stats.recordEviction();
+            }
+        }
+    }
+
+    private void notifyRemoval(List<V> removed) {
+        if (removalListener == null) return;
+        for (V value : removed) {
+            removalListener.accept(value);
+        }
+    }
+
+    private static final class Candidate<K, V> {
+        private final K key;
+        private final Node<V> node;
+        private final long accessed;
+
+        Candidate(K key, Node<V> node) {
+            this.key = key;
+            this.node = node;
+            this.accessed = node.accessed;
+        }
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private final long weight;
+        // System.nanoTime() of the last access, written racily, only used to pick entries to evict
+        private volatile long accessed = System.nanoTime();
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        void touch() {
+            accessed = System.nanoTime();
+        }
+    }
+}
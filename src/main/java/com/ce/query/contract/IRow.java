@@ -4,4 +4,66 @@ import java.util.Map;
 
 public interface IRow extends Map<String, Object> {
     <T> T getAs(String key, Class<T> t);
+
+    /**
+     * get value as int without boxing, 0 if value is null
+     *
+     * @param key
+     * @return
+     * @throws com.ce.query.exception.ConvertException if value is not a number, or not an exact int
+     */
+    default int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    default int getInt(String key, int defaultValue) {
+        Object o = get(key);
+        return o == null ? defaultValue : RowValues.toInt(o);
+    }
+
+    /**
+     * get value as long without boxing, 0 if value is null
+     *
+     * @param key
+     * @return
+     * @throws com.ce.query.exception.ConvertException if value is not a number, or not an exact long
+     */
+    default long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    default long getLong(String key, long defaultValue) {
+        Object o = get(key);
+        return o == null ? defaultValue : RowValues.toLong(o);
+    }
+
+    /**
+     * get value as double without boxing, 0 if value is null
+     *
+     * @param key
+     * @return
+     */
+    default double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    default double getDouble(String key, double defaultValue) {
+        Object o = get(key);
+        return o == null ? defaultValue : RowValues.toDouble(o);
+    }
+
+    /**
+     * get value as boolean, numbers are true if not 0, false if value is null
+     *
+     * @param key
+     * @return
+     */
+    default boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    default boolean getBoolean(String key, boolean defaultValue) {
+        Object o = get(key);
+        return o == null ? defaultValue : RowValues.toBoolean(o);
+    }
 }
@@ -0,0 +1,83 @@
+package com.ce.query.contract;
+
+import com.ce.query.exception.ConvertException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * exact conversions of row values used by the primitive getters of {@link IRow},
+ * values which do not fit the type are rejected instead of truncated
+ */
+final class RowValues {
+
+    // 2^63, first double above the long range
+    private static final double LONG_RANGE_END = 0x1p63;
+
+    private RowValues() {
+    }
+
+    static int toInt(Object o) {
+        Number n = toNumber(o, "integer");
+        if (n instanceof Integer || n instanceof Short || n instanceof Byte) {
+            return n.intValue();
+        }
+        try {
+            if (n instanceof BigDecimal) return ((BigDecimal) n).intValueExact();
+            if (n instanceof BigInteger) return ((BigInteger) n).intValueExact();
+            if (n instanceof Double || n instanceof Float) {
+                double d = n.doubleValue();
+                if (d != (int) d) throw outOfRange(n, "integer");
+                return (int) d;
+            }
+            return Math.toIntExact(n.longValue());
+        } catch (ArithmeticException e) {
+            throw outOfRange(n, "integer");
+        }
+    }
+
+    static long toLong(Object o) {
+        Number n = toNumber(o, "long");
+        try {
+            if (n instanceof BigDecimal) return ((BigDecimal) n).longValueExact();
+            if (n instanceof BigInteger) return ((BigInteger) n).longValueExact();
+        } catch (ArithmeticException e) {
+            throw outOfRange(n, "long");
+        }
+        if (n instanceof Double || n instanceof Float) {
+            double d = n.doubleValue();
+            if (d != Math.rint(d) || d < -LONG_RANGE_END || d >= LONG_RANGE_END) throw outOfRange(n, "long");
+            return (long) d;
+        }
+        return n.longValue();
+    }
+
+    static double toDouble(Object o) {
+        return toNumber(o, "double").doubleValue();
+    }
+
+    static boolean toBoolean(Object o) {
+        if (o instanceof Boolean) {
+            return (Boolean) o;
+        }
+        // databases without boolean type, e.g. oracle number(1)
+        if (o instanceof BigDecimal) {
+            return ((BigDecimal) o).signum() != 0;
+        }
+        if (o instanceof Number) {
+            return ((Number) o).doubleValue() != 0;
+        }
+        throw new ConvertException("not a boolean type: " + o.getClass().getName());
+    }
+
+    private static Number toNumber(Object o, String type) {
+        if (o instanceof Number) {
+            return (Number) o;
+        }
+        throw new ConvertException("not a " + type + " type: " + o.getClass().getName());
+    }
+
+    private static ConvertException outOfRange(Number n, String type) {
+        return new ConvertException("not an exact " + type + " value: " + n);
+    }
+}
@@ -4,8 +4,9 @@ import com.ce.query.exception.ConvertException;
 import com.ce.query.fromQueryer.GeneralDataConverters;
 
 import java.sql.Timestamp;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataConverterManager {
 
@@ -20,18 +21,28 @@ public class DataConverterManager {
         this.register(Timestamp.class, new GeneralDataConverters.TimestampDataConverter());
     }
 
-    private Map<Class<?>, IDataConverter<?>> map = new HashMap<>();
+    // registered converters in registration order, guarded by this
+    private final Map<Class<?>, IDataConverter<?>> map = new LinkedHashMap<>();
 
-    @SuppressWarnings("unchecked")
-    public <T> IDataConverter<T> lookup(Class<T> targetType) {
+    // marks a type without converter in resolved
+    private static final IDataConverter<Object> NONE = new IDataConverter<Object>() {
+        @Override
+        public Object fromRaw(Object o) {
+            return o;
+        }
 
-        IDataConverter<T> converter = null;
-        for (Class<?> clazz : map.keySet()) {
-            if (clazz.isAssignableFrom(targetType)) {
-                converter = (IDataConverter<T>) map.get(clazz);
-                break;
-            }
+        @Override
+        public Object toRaw(Object o) {
+            return o;
         }
+    };
+
+    // converters resolved for target types, cleared on every register
+    private final ConcurrentHashMap<Class<?>, IDataConverter<?>> resolved = new ConcurrentHashMap<>();
+
+    public <T> IDataConverter<T> lookup(Class<T> targetType) {
+
+        IDataConverter<T> converter = find(targetType);
 
         if (converter == null) {
             throw new ConvertException("given data type " + targetType.getSimpleName() + " is not supported");
@@ -40,7 +51,50 @@ public class DataConverterManager {
         return converter;
     }
 
-    public <T> void register(Class<T> dataType, IDataConverter<T> converter) {
+    /**
+     * converter of the type, like <code>lookup()</code> but does not throw
+     *
+     * @param targetType
+     * @param <T>
+     * @return null if no converter is registered for the type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> IDataConverter<T> find(Class<T> targetType) {
+
+        IDataConverter<?> converter = resolved.get(targetType);
+
+        if (converter == null) {
+            converter = resolve(targetType);
+        }
+
+        return converter == NONE ? null : (IDataConverter<T>) converter;
+    }
+
+    /**
+     * find converter registered for the exact type, or the first registered super type
+     *
+     * @param targetType
+     * @return null if not found
+     */
+    private synchronized IDataConverter<?> resolve(Class<?> targetType) {
+        IDataConverter<?> converter = map.get(targetType);
+
+        if (converter == null) {
+            for (Map.Entry<Class<?>, IDataConverter<?>> entry : map.entrySet()) {
+                if (entry.getKey().isAssignableFrom(targetType)) {
+                    converter = entry.getValue();
+                    break;
+                }
+            }
+        }
+
+        resolved.put(targetType, converter != null ? converter : NONE);
+
+        return converter;
+    }
+
+    public synchronized <T> void register(Class<T> dataType, IDataConverter<T> converter) {
         map.put(dataType, converter);
+        resolved.clear();
     }
 }
@@ -2,13 +2,6 @@ package com.ce.query.grammar;
 
 public abstract class AbstractGrammar implements IGrammar {
 
-    @Override
-    public void handleSkip(StringBuffer buffer, int skip) {
-        buffer.append(String.format(" offset %s rows ", skip));
-    }
-
-    @Override
-    public void handleTake(StringBuffer buffer, int take) {
-        buffer.append(String.format(" fetch next %s rows only ", take));
-    }
+    // lists longer than this are staged into temporary table, by grammars which support it
+    protected static final int TEMPORARY_IN_TABLE_THRESHOLD = 10000;
 }
@@ -12,6 +12,7 @@ public class GrammarManager {
 
     GrammarManager() {
         this.register(new OracleGrammar());
+        this.register(new PostgreSQLGrammar());
         this.register(new DefaultGrammar());
     }
 
@@ -4,8 +4,191 @@ public interface IGrammar {
 
     String getDatabaseProductName();
 
-    void handleSkip(StringBuffer buffer, int skip);
+    /**
+     * append skipping of rows. Default calls the <code>StringBuffer</code> variant,
+     * so grammars overriding it keep working
+     *
+     * @param buffer
+     * @param skip
+     */
+    default void handleSkip(StringBuilder buffer, int skip) {
+        StringBuffer legacy = new StringBuffer();
+        handleSkip(legacy, skip);
+        buffer.append(legacy);
+    }
 
+    /**
+     * append taking of rows. Default calls the <code>StringBuffer</code> variant,
+     * so grammars overriding it keep working
+     *
+     * @param buffer
+     * @param take
+     */
+    default void handleTake(StringBuilder buffer, int take) {
+        StringBuffer legacy = new StringBuffer();
+        handleTake(legacy, take);
+        buffer.append(legacy);
+    }
 
-    void handleTake(StringBuffer buffer, int take);
+    /**
+     * @deprecated override <code>handleSkip(StringBuilder, int)</code>
+     */
+    @Deprecated
+    default void handleSkip(StringBuffer buffer, int skip) {
+        buffer.append(" offset ").append(skip).append(" rows ");
+    }
+
+    /**
+     * @deprecated override <code>handleTake(StringBuilder, int)</code>
+     */
+    @Deprecated
+    default void handleTake(StringBuffer buffer, int take) {
+        buffer.append(" fetch next ").append(take).append(" rows only ");
+    }
+
+    /**
+     * append keyset predicate which selects rows after the given named parameters in the given ordering,
+     * e.g. <code>(a > :p0 or (a = :p0 and b > :p1))</code>. <br>
+     * Default is the expanded form, it works on every database and with mixed directions.
+     *
+     * @param buffer
+     * @param columns    ordering columns, without direction
+     * @param descending direction of each column
+     * @param names      named parameters of the last values, without colon
+     */
+    default void handleSeek(StringBuilder buffer, String[] columns, boolean[] descending, String[] names) {
+        buffer.append(" ( ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                buffer.append(" or ");
+            }
+            buffer.append("( ");
+            for (int j = 0; j < i; j++) {
+                buffer.append(columns[j]).append(" = :").append(names[j]).append(" and ");
+            }
+            buffer.append(columns[i]).append(descending[i] ? " < :" : " > :").append(names[i]);
+            buffer.append(" )");
+        }
+        buffer.append(" ) ");
+    }
+
+    /**
+     * append one insert statement of several rows, by default one <code>values</code> list of all rows
+     *
+     * @param buffer
+     * @param table
+     * @param columns
+     * @param names   named parameters of each row and column, without colon
+     */
+    default void handleMultiRowInsert(StringBuilder buffer, String table, String[] columns, String[][] names) {
+        buffer.append(String.format("insert into %s (%s) values ", table, String.join(", ", columns)));
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append("(:").append(String.join(", :", names[i])).append(")");
+        }
+    }
+
+    /**
+     * max number of bind parameters in one statement, by default the postgresql driver limit,
+     * which is the lowest of common databases
+     *
+     * @return
+     */
+    default int getMaxBindParameters() {
+        return 32767;
+    }
+
+    /**
+     * strategy of a whereIn list of the given size. <br>
+     * Default expands lists, temporary table DDL differs between databases and may commit the current
+     * transaction, so only grammars overriding <code>createTemporaryInTable</code> choose to stage lists
+     *
+     * @param size
+     * @return
+     */
+    default InListStrategy chooseInListStrategy(int size) {
+        return InListStrategy.EXPAND;
+    }
+
+    /**
+     * max number of values in one IN list, longer lists are split into OR'd blocks.
+     * Default is the oracle limit, it also keeps statements of other databases reasonable
+     *
+     * @return
+     */
+    default int getMaxInListSize() {
+        return 1000;
+    }
+
+    /**
+     * append predicate matching the column against an array parameter
+     *
+     * @param buffer
+     * @param column
+     * @param name   named parameter of the array, without colon
+     */
+    default void handleArrayIn(StringBuilder buffer, String column, String name) {
+        buffer.append(' ').append(column).append(" = any(:").append(name).append(") ");
+    }
+
+    /**
+     * SQL type of array elements and temporary table column for the value
+     *
+     * @param value
+     * @return null if the value has no known type, the list is then expanded
+     */
+    default String getElementTypeName(Object value) {
+        if (value instanceof String) return "varchar";
+        if (value instanceof Integer || value instanceof Short) return "integer";
+        if (value instanceof Long) return "bigint";
+        if (value instanceof java.math.BigDecimal) return "numeric";
+        if (value instanceof Double) return "double precision";
+        if (value instanceof Boolean) return "boolean";
+        if (value instanceof java.sql.Timestamp) return "timestamp";
+        if (value instanceof java.sql.Date) return "date";
+        return null;
+    }
+
+    /**
+     * statement creating a temporary table with one column <code>v</code> of the given type,
+     * it must not commit the current transaction. Only called if <code>chooseInListStrategy</code>
+     * returns <code>TEMPORARY_TABLE</code>, not supported by default
+     *
+     * @param table
+     * @param typeName
+     * @return
+     */
+    default String createTemporaryInTable(String table, String typeName) {
+        throw new UnsupportedOperationException(
+                String.format("temporary in table is not supported by %s", getDatabaseProductName()));
+    }
+
+    /**
+     * whether total count can be selected with the page by window function <code>count(*) over ()</code>
+     *
+     * @return
+     */
+    default boolean supportsWindowCount() {
+        return false;
+    }
+
+    /**
+     * fetch size applied to queries without explicit fetch size, 0 keeps the driver default
+     *
+     * @return
+     */
+    default int getDefaultFetchSize() {
+        return 0;
+    }
+
+    /**
+     * upper bound of adaptive fetch size
+     *
+     * @return
+     */
+    default int getMaxFetchSize() {
+        return 10000;
+    }
 }
@@ -0,0 +1,20 @@
+package com.ce.query.grammar;
+
+/**
+ * how a <code>whereIn</code> list is rendered, chosen by {@link IGrammar#chooseInListStrategy(int)}
+ */
+public enum InListStrategy {
+    /**
+     * one named parameter per value, in OR'd blocks of at most the max IN list size,
+     * each block padded to a power of two size
+     */
+    EXPAND,
+    /**
+     * one array parameter, rendered by {@link IGrammar#handleArrayIn(StringBuilder, String, String)}
+     */
+    ARRAY,
+    /**
+     * values staged into a temporary table, which is selected by a sub query
+     */
+    TEMPORARY_TABLE
+}
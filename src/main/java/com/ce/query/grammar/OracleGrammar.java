@@ -6,4 +6,50 @@ public class OracleGrammar extends AbstractGrammar {
     public String getDatabaseProductName() {
         return "ORACLE";
     }
+
+    @Override
+    public boolean supportsWindowCount() {
+        return true;
+    }
+
+    /**
+     * oracle does not take several rows in values, <code>insert all</code> inserts them in one statement
+     */
+    @Override
+    public void handleMultiRowInsert(StringBuilder buffer, String table, String[] columns, String[][] names) {
+        String into = String.format(" into %s (%s) values ", table, String.join(", ", columns));
+        buffer.append("insert all");
+        for (String[] row : names) {
+            buffer.append(into).append("(:").append(String.join(", :", row)).append(")");
+        }
+        buffer.append(" select 1 from dual");
+    }
+
+    /**
+     * temporary tables of oracle must be created ahead, lists are always expanded
+     */
+    @Override
+    public InListStrategy chooseInListStrategy(int size) {
+        return InListStrategy.EXPAND;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return 65535;
+    }
+
+    /**
+     * oracle driver fetches 10 rows per round trip by default
+     *
+     * @return
+     */
+    @Override
+    public int getDefaultFetchSize() {
+        return 500;
+    }
+
+    @Override
+    public int getMaxFetchSize() {
+        return 5000;
+    }
 }
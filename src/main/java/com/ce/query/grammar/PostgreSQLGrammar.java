@@ -0,0 +1,46 @@
+package com.ce.query.grammar;
+
+public class PostgreSQLGrammar extends AbstractGrammar {
+
+    @Override
+    public String getDatabaseProductName() {
+        return "PostgreSQL";
+    }
+
+    /**
+     * one array parameter, so the SQL is the same for every list size
+     */
+    @Override
+    public InListStrategy chooseInListStrategy(int size) {
+        return size > TEMPORARY_IN_TABLE_THRESHOLD ? InListStrategy.TEMPORARY_TABLE : InListStrategy.ARRAY;
+    }
+
+    /**
+     * DDL of postgresql is transactional, the table is rolled back together with the transaction
+     */
+    @Override
+    public String createTemporaryInTable(String table, String typeName) {
+        return String.format("create temporary table %s (v %s)", table, typeName);
+    }
+
+    @Override
+    public boolean supportsWindowCount() {
+        return true;
+    }
+
+    /**
+     * row value comparison when all columns share one direction, so a composite index can be used as range
+     */
+    @Override
+    public void handleSeek(StringBuilder buffer, String[] columns, boolean[] descending, String[] names) {
+        for (int i = 1; i < descending.length; i++) {
+            if (descending[i] != descending[0]) {
+                super.handleSeek(buffer, columns, descending, names);
+                return;
+            }
+        }
+
+        buffer.append(String.format(" ( %s ) %s ( :%s ) ",
+                String.join(", ", columns), descending[0] ? "<" : ">", String.join(", :", names)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.ce.query.listener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory latency histogram of each SQL fingerprint.
+ * <code>
+ * HistogramQueryListener histograms = new HistogramQueryListener();
+ * QueryListeners.register(histograms);
+ * long p99 = histograms.getHistogram(fingerprint).getP99Nanos();
+ * </code>
+ */
+public class HistogramQueryListener implements QueryListener {
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final QueryPhase phase;
+
+    /**
+     * record total time of queries
+     */
+    public HistogramQueryListener() {
+        this(null);
+    }
+
+    /**
+     * record time of one phase of queries
+     *
+     * @param phase null for total time
+     */
+    public HistogramQueryListener(QueryPhase phase) {
+        this.phase = phase;
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        String fingerprint = event.getFingerprint();
+        LatencyHistogram histogram = histograms.get(fingerprint);
+        if (histogram == null) {
+            histograms.putIfAbsent(fingerprint, new LatencyHistogram());
+            histogram = histograms.get(fingerprint);
+        }
+        histogram.record(phase == null ? event.getTotalNanos() : event.getPhaseNanos(phase));
+    }
+
+    /**
+     * @param fingerprint
+     * @return null if no query of the fingerprint is recorded
+     */
+    public LatencyHistogram getHistogram(String fingerprint) {
+        return histograms.get(fingerprint);
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+}
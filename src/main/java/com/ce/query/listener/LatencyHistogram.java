@@ -0,0 +1,102 @@
+package com.ce.query.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies with log scaled buckets in micro seconds, four buckets per power of two,
+ * so percentiles are accurate within 25%.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 252;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+
+        counts.incrementAndGet(bucket(nanos / 1000));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    /**
+     * latency which the given ratio of records do not exceed
+     *
+     * @param percentile between 0 and 1, e.g. 0.99
+     * @return upper bound of the bucket in nanos, 0 if nothing recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = count.get();
+        if (n == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i) * 1000, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public long getP50Nanos() {
+        return getPercentileNanos(0.5);
+    }
+
+    public long getP99Nanos() {
+        return getPercentileNanos(0.99);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    static int bucket(long micros) {
+        if (micros < 4) return (int) micros;
+        int power = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (power - 2)) & 3;
+        return 4 * (power - 1) + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 4) return bucket;
+        int power = bucket / 4 + 1;
+        long width = 1L << (power - 2);
+        return (4 + bucket % 4) * width + width - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%s, p50=%sus, p99=%sus, max=%sus",
+                getCount(), getP50Nanos() / 1000, getP99Nanos() / 1000, getMaxNanos() / 1000);
+    }
+}
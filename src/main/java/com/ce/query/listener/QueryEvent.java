@@ -0,0 +1,92 @@
+package com.ce.query.listener;
+
+/**
+ * One query execution with time of each phase, in nano seconds.
+ */
+public final class QueryEvent {
+
+    public enum Type {
+        QUERY, UPDATE, BATCH
+    }
+
+    private final Type type;
+    private final String sql;
+    private final long[] phaseNanos;
+    private final long rowCount;
+    private final Throwable error;
+    private String fingerprint;
+
+    /**
+     * @param type
+     * @param sql
+     * @param phaseNanos nanos of each phase, indexed by ordinal of {@link QueryPhase}
+     * @param rowCount   rows fetched by query or updated by update and batch, -1 if unknown
+     * @param error      null if succeeded
+     */
+    public QueryEvent(Type type, String sql, long[] phaseNanos, long rowCount, Throwable error) {
+        if (phaseNanos.length != QueryPhase.values().length) {
+            throw new IllegalArgumentException("nanos of each phase are required");
+        }
+        this.type = type;
+        this.sql = sql;
+        this.phaseNanos = phaseNanos.clone();
+        this.rowCount = rowCount;
+        this.error = error;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * SQL with literals and parameters replaced by <code>?</code>, shared by executions of the same shape
+     *
+     * @return
+     */
+    public String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = SqlFingerprint.of(sql);
+        }
+        return fingerprint;
+    }
+
+    public long getPhaseNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(type).append(' ').append(getTotalNanos() / 1000).append("us");
+        for (QueryPhase phase : QueryPhase.values()) {
+            builder.append(' ').append(phase.name().toLowerCase()).append('=')
+                    .append(phaseNanos[phase.ordinal()] / 1000).append("us");
+        }
+        builder.append(" rows=").append(rowCount).append(' ').append(getFingerprint());
+        return builder.toString();
+    }
+}
@@ -0,0 +1,12 @@
+package com.ce.query.listener;
+
+/**
+ * Listener of query executions, registered by {@link QueryListeners#register(QueryListener)} or found by
+ * <code>java.util.ServiceLoader</code> from <code>META-INF/services/com.ce.query.listener.QueryListener</code>.
+ * <br>
+ * It is called on the thread running the query, so it should return quickly.
+ */
+public interface QueryListener {
+
+    void onQuery(QueryEvent event);
+}
@@ -0,0 +1,65 @@
+package com.ce.query.listener;
+
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of query listeners. <br>
+ * Queries check {@link #isActive()} before timing anything, so there is no cost without listeners.
+ */
+public final class QueryListeners {
+
+    private static final QueryListener[] NONE = new QueryListener[0];
+
+    // copied on write, read without lock by every query
+    private static volatile QueryListener[] listeners = NONE;
+
+    static {
+        for (QueryListener listener : ServiceLoader.load(QueryListener.class)) {
+            register(listener);
+        }
+    }
+
+    private QueryListeners() {
+    }
+
+    public static synchronized void register(QueryListener listener) {
+        if (listener == null) return;
+        QueryListener[] current = listeners;
+        QueryListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    public static synchronized void unregister(QueryListener listener) {
+        QueryListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                QueryListener[] updated = new QueryListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    public static boolean isActive() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * dispatch the event to all listeners, a failing listener does not affect the query or other listeners
+     *
+     * @param event
+     */
+    public static void fire(QueryEvent event) {
+        for (QueryListener listener : listeners) {
+            try {
+                listener.onQuery(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
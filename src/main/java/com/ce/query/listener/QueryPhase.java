@@ -0,0 +1,31 @@
+package com.ce.query.listener;
+
+/**
+ * phases of a query execution timed by {@link QueryEvent}
+ */
+public enum QueryPhase {
+    /**
+     * rendering SQL from the Query object
+     */
+    BUILD,
+    /**
+     * preparing the statement, including SQL parsing of named parameters
+     */
+    PREPARE,
+    /**
+     * binding parameter values
+     */
+    BIND,
+    /**
+     * executing the statement until first result
+     */
+    EXECUTE,
+    /**
+     * reading rows from result set
+     */
+    FETCH,
+    /**
+     * converting rows by IRowToEntityHandler
+     */
+    MAPPING
+}
@@ -0,0 +1,28 @@
+package com.ce.query.listener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Listener calling the hook with queries slower than the threshold.
+ * <code>
+ * QueryListeners.register(new SlowQueryListener(500, event -> logger.warn("slow query {}", event)));
+ * </code>
+ */
+public class SlowQueryListener implements QueryListener {
+
+    private final long thresholdNanos;
+    private final Consumer<QueryEvent> hook;
+
+    public SlowQueryListener(long thresholdMillis, Consumer<QueryEvent> hook) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.hook = hook;
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        if (event.getTotalNanos() >= thresholdNanos) {
+            hook.accept(event);
+        }
+    }
+}
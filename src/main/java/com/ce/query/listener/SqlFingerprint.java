@@ -0,0 +1,102 @@
+package com.ce.query.listener;
+
+import com.ce.query.cache.LruCache;
+
+/**
+ * Normalizer of SQL into a fingerprint, queries differing only in literals, parameters or IN list sizes share it.
+ * <code>
+ * select * from people where id in ( :id__0000, :id__0001 ) and name = 'a'
+ * // select * from people where id in ( ?+ ) and name = ?
+ * </code>
+ */
+public final class SqlFingerprint {
+
+    private static final LruCache<String, String> CACHE = new LruCache<>(1024);
+
+    private SqlFingerprint() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) return null;
+
+        return CACHE.computeIfAbsent(sql, SqlFingerprint::normalize);
+    }
+
+    static String normalize(String sql) {
+        StringBuilder builder = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            if (c == '\'') {
+                // string literal, '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                appendValue(builder);
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                // named parameter
+                i++;
+                while (i < length && Character.isJavaIdentifierPart(sql.charAt(i))) i++;
+                appendValue(builder);
+            } else if (c == '?') {
+                i++;
+                appendValue(builder);
+            } else if (Character.isDigit(c) && !isIdentifierEnd(builder)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                appendValue(builder);
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) i++;
+                if (builder.length() > 0) builder.append(' ');
+            } else if (Character.isJavaIdentifierPart(c)) {
+                while (i < length && Character.isJavaIdentifierPart(sql.charAt(i))) {
+                    builder.append(Character.toLowerCase(sql.charAt(i)));
+                    i++;
+                }
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+
+        return builder.toString().trim();
+    }
+
+    /**
+     * append a value, lists of values collapse into <code>?+</code>
+     */
+    private static void appendValue(StringBuilder builder) {
+        int end = builder.length();
+        while (end > 0 && builder.charAt(end - 1) == ' ') end--;
+
+        if (end > 0 && builder.charAt(end - 1) == ',') {
+            int before = end - 1;
+            while (before > 0 && builder.charAt(before - 1) == ' ') before--;
+            if (before > 0 && builder.charAt(before - 1) == '?') {
+                builder.setLength(before);
+                builder.append('+');
+                return;
+            }
+            if (before > 1 && builder.charAt(before - 1) == '+' && builder.charAt(before - 2) == '?') {
+                builder.setLength(before);
+                return;
+            }
+        }
+        builder.append('?');
+    }
+
+    private static boolean isIdentifierEnd(StringBuilder builder) {
+        return builder.length() > 0 && Character.isJavaIdentifierPart(builder.charAt(builder.length() - 1));
+    }
+}
@@ -0,0 +1,92 @@
+package com.ce.query.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * thread safe counters of a {@link PooledDataSource}
+ */
+public class PoolStats {
+
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    void recordBorrow(long waitNanos) {
+        borrows.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    void recordCreated() {
+        created.incrementAndGet();
+    }
+
+    void recordDestroyed() {
+        destroyed.incrementAndGet();
+    }
+
+    void recordValidationFailure() {
+        validationFailures.incrementAndGet();
+    }
+
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyed.get();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailures.get();
+    }
+
+    /**
+     * average time spent waiting for a connection in milliseconds
+     *
+     * @return
+     */
+    public double getAverageWaitMillis() {
+        long count = borrows.get();
+        return count == 0 ? 0 : (double) totalWaitNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * longest time spent waiting for a connection in milliseconds
+     *
+     * @return
+     */
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "PoolStats{borrows=%d, timeouts=%d, created=%d, destroyed=%d, validationFailures=%d, averageWaitMillis=%.3f, maxWaitMillis=%.3f}",
+                getBorrowCount(), getTimeoutCount(), getCreatedCount(), getDestroyedCount(),
+                getValidationFailureCount(), getAverageWaitMillis(), getMaxWaitMillis()
+        );
+    }
+}
@@ -0,0 +1,213 @@
+package com.ce.query.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * physical connection kept by the pool, and the handler of the proxy handed out to borrower. <br>
+ * Closing the proxy closes statements left open by the borrower and returns the physical connection to the pool.
+ */
+class PooledConnection {
+
+    final Connection connection;
+    final boolean initialAutoCommit;
+    final boolean initialReadOnly;
+    final int initialIsolation;
+    final String initialCatalog;
+    final int initialHoldability;
+    // null if not supported by the driver
+    final String initialSchema;
+    final Map<String, Class<?>> initialTypeMap;
+    // -1 if not supported by the driver
+    final int initialNetworkTimeout;
+    volatile long lastUsedNanos;
+
+    PooledConnection(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.initialAutoCommit = connection.getAutoCommit();
+        this.initialReadOnly = connection.isReadOnly();
+        this.initialIsolation = connection.getTransactionIsolation();
+        this.initialCatalog = connection.getCatalog();
+        this.initialHoldability = connection.getHoldability();
+        this.initialSchema = schema(connection);
+        this.initialTypeMap = typeMap(connection);
+        this.initialNetworkTimeout = networkTimeout(connection);
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * create the proxy for one borrow
+     *
+     * @param pool
+     * @return
+     */
+    Connection borrow(PooledDataSource pool) {
+        return (Connection) Proxy.newProxyInstance(
+                PooledConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handler(pool)
+        );
+    }
+
+    /**
+     * roll back the open transaction and restore state changed by borrower to the values at creation
+     *
+     * @throws SQLException
+     */
+    void reset() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+        if (connection.getAutoCommit() != initialAutoCommit) {
+            connection.setAutoCommit(initialAutoCommit);
+        }
+        if (connection.isReadOnly() != initialReadOnly) {
+            connection.setReadOnly(initialReadOnly);
+        }
+        if (connection.getTransactionIsolation() != initialIsolation) {
+            connection.setTransactionIsolation(initialIsolation);
+        }
+        if (initialCatalog != null && !initialCatalog.equals(connection.getCatalog())) {
+            connection.setCatalog(initialCatalog);
+        }
+        if (connection.getHoldability() != initialHoldability) {
+            connection.setHoldability(initialHoldability);
+        }
+        if (initialSchema != null && !initialSchema.equals(connection.getSchema())) {
+            connection.setSchema(initialSchema);
+        }
+        if (initialTypeMap != null && !initialTypeMap.equals(connection.getTypeMap())) {
+            connection.setTypeMap(new HashMap<>(initialTypeMap));
+        }
+        if (initialNetworkTimeout >= 0 && connection.getNetworkTimeout() != initialNetworkTimeout) {
+            connection.setNetworkTimeout(Runnable::run, initialNetworkTimeout);
+        }
+        connection.clearWarnings();
+    }
+
+    private static String schema(Connection connection) throws SQLException {
+        try {
+            return connection.getSchema();
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Class<?>> typeMap(Connection connection) throws SQLException {
+        try {
+            Map<String, Class<?>> typeMap = connection.getTypeMap();
+            return typeMap == null ? null : new HashMap<>(typeMap);
+        } catch (SQLFeatureNotSupportedException e) {
+            return null;
+        }
+    }
+
+    private static int networkTimeout(Connection connection) throws SQLException {
+        try {
+            return connection.getNetworkTimeout();
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+            return -1;
+        }
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closeQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private class Handler implements InvocationHandler {
+
+        // closed ones are pruned once the list reaches this size, so long borrows do not accumulate them
+        private static final int PRUNE_THRESHOLD = 64;
+
+        private final PooledDataSource pool;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean closed = false;
+
+        Handler(PooledDataSource pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if ("equals".equals(name) && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name) && args == null) {
+                return "PooledConnection[" + connection + "]";
+            }
+            if ("isClosed".equals(name) && args == null) {
+                return closed || connection.isClosed();
+            }
+            if ("close".equals(name) && args == null) {
+                if (!closed) {
+                    closed = true;
+                    closeStatements();
+                    pool.giveBack(PooledConnection.this);
+                }
+                return null;
+            }
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                track((Statement) result);
+            }
+            return result;
+        }
+
+        private void track(Statement statement) {
+            if (statements.size() >= PRUNE_THRESHOLD) {
+                statements.removeIf(PooledConnection::isClosed);
+            }
+            statements.add(statement);
+        }
+
+        /**
+         * close statements left open, they must not carry over to the next borrower
+         */
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.ce.query.pool;
+
+import com.ce.query.exception.QueryException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight connection pool on top of a plain DataSource. <br>
+ * Idle connections are kept in a lock free deque, borrowers are bounded by a semaphore of <code>maxSize</code>
+ * permits. Connections idle longer than the validation interval are checked by <code>isValid</code> on borrow,
+ * and connections idle longer than the idle timeout are evicted down to <code>minSize</code>.
+ * <code>
+ * PooledDataSource pool = new PooledDataSource(dataSource);
+ * pool.setMaxSize(20);
+ * DatabaseWrapper databaseWrapper = new DatabaseWrapper(pool);
+ * </code>
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    private final DataSource target;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final PoolStats stats = new PoolStats();
+
+    private volatile int minSize = 0;
+    private volatile int maxSize = 10;
+    private volatile long maxWaitMillis = 30000;
+    private volatile long idleTimeoutMillis = 600000;
+    private volatile long validationIntervalMillis = 500;
+    private volatile int validationTimeoutSeconds = 5;
+    private volatile long evictionIntervalMillis = 30000;
+
+    private volatile Semaphore permits;
+    private volatile ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    public PooledDataSource(DataSource target) {
+        if (target == null) {
+            throw new QueryException("data source is required");
+        }
+        this.target = target;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("pool is closed");
+        }
+        start();
+
+        long start = System.nanoTime();
+        Semaphore semaphore = permits;
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for connection", e);
+        }
+        if (!acquired) {
+            stats.recordTimeout();
+            throw new SQLTransientConnectionException(
+                    "connection is not available, request timed out after " + maxWaitMillis + " ms");
+        }
+        stats.recordBorrow(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = take();
+            active.incrementAndGet();
+            return pooled.borrow(this);
+        } catch (SQLException | RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("pooled connections use credentials of the target data source");
+    }
+
+    /**
+     * take a valid idle connection, or create a new one
+     *
+     * @return
+     * @throws SQLException
+     */
+    private PooledConnection take() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (validate(pooled)) {
+                return pooled;
+            }
+            stats.recordValidationFailure();
+            destroy(pooled);
+        }
+        return create();
+    }
+
+    private boolean validate(PooledConnection pooled) {
+        long idleNanos = System.nanoTime() - pooled.lastUsedNanos;
+        if (idleNanos < TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis)) {
+            return true;
+        }
+
+        try {
+            return pooled.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        total.incrementAndGet();
+        try {
+            PooledConnection pooled = new PooledConnection(target.getConnection());
+            stats.recordCreated();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        stats.recordDestroyed();
+        pooled.closeQuietly();
+    }
+
+    /**
+     * called when borrower closes the connection
+     *
+     * @param pooled
+     */
+    void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            boolean reusable;
+            try {
+                reusable = !closed && !pooled.connection.isClosed() && total.get() <= maxSize;
+                if (reusable) {
+                    pooled.reset();
+                }
+            } catch (SQLException e) {
+                reusable = false;
+            }
+
+            if (reusable) {
+                pooled.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(pooled);
+                if (closed && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void start() {
+        if (permits != null) return;
+
+        synchronized (this) {
+            if (permits != null) return;
+
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "database-query-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evict, evictionIntervalMillis, evictionIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            permits = new Semaphore(maxSize, true);
+            fill();
+        }
+    }
+
+    /**
+     * close connections idle longer than idle timeout, keep at least min size, and refill to min size
+     */
+    void evict() {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        long now = System.nanoTime();
+
+        // oldest idle connections are at the tail
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && total.get() > minSize) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.lastUsedNanos > timeoutNanos && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        fill();
+    }
+
+    private void fill() {
+        while (!closed && total.get() < minSize) {
+            try {
+                PooledConnection pooled = create();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    /**
+     * close all idle connections, connections in use are closed when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public PoolStats getStats() {
+        return stats;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * number of connections kept open even when idle, default 0, not greater than max size
+     *
+     * @param minSize
+     */
+    public void setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new QueryException("min size must not be negative");
+        }
+        if (minSize > maxSize) {
+            throw new QueryException("min size must not be greater than max size");
+        }
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * max number of connections, default 10, can only be changed before first connection is borrowed
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new QueryException("max size must be positive");
+        }
+        if (maxSize < minSize) {
+            throw new QueryException("max size must not be less than min size");
+        }
+        if (permits != null) {
+            throw new QueryException("max size can not be changed after pool is started");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * how long to wait for a connection before SQLTransientConnectionException is thrown, default 30 seconds
+     *
+     * @param maxWaitMillis
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * connections idle longer than this are closed, default 10 minutes
+     *
+     * @param idleTimeoutMillis
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    /**
+     * connections idle longer than this are validated on borrow, default 500 ms
+     *
+     * @param validationIntervalMillis
+     */
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    /**
+     * how often idle connections are checked, default 30 seconds, can only be changed before pool is started
+     *
+     * @param evictionIntervalMillis
+     */
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        if (evictionIntervalMillis <= 0) {
+            throw new QueryException("eviction interval must be positive");
+        }
+        if (permits != null) {
+            throw new QueryException("eviction interval can not be changed after pool is started");
+        }
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
@@ -73,6 +73,59 @@ public class ConverterFactoryTest {
         assertThat(o).isExactlyInstanceOf(Bean.class);
     }
 
+    class OtherBeanDataConverter extends BeanDataConverter {
+    }
+
+    @Test
+    public void givenResolvedConverter_whenRegisterAgain_thenNewConverterUsed() {
+        DataConverterManager.INSTANCE.register(Bean.class, new BeanDataConverter());
+        assertThat(DataConverterManager.INSTANCE.lookup(BeanSub.class)).isExactlyInstanceOf(BeanDataConverter.class);
+
+        DataConverterManager.INSTANCE.register(Bean.class, new OtherBeanDataConverter());
+        assertThat(DataConverterManager.INSTANCE.lookup(BeanSub.class)).isExactlyInstanceOf(OtherBeanDataConverter.class);
+
+        DataConverterManager.INSTANCE.register(Bean.class, new BeanDataConverter());
+    }
+
+    class Shape {
+    }
+
+    class Circle extends Shape {
+    }
+
+    class ShapeDataConverter implements IDataConverter<Shape> {
+        @Override
+        public Shape fromRaw(Object o) {
+            return new Shape();
+        }
+
+        @Override
+        public Object toRaw(Shape shape) {
+            return shape;
+        }
+    }
+
+    class CircleDataConverter implements IDataConverter<Circle> {
+        @Override
+        public Circle fromRaw(Object o) {
+            return new Circle();
+        }
+
+        @Override
+        public Object toRaw(Circle circle) {
+            return circle;
+        }
+    }
+
+    @Test
+    public void givenSubClassConverter_whenLookup_thenExactMatchWins() {
+        DataConverterManager.INSTANCE.register(Shape.class, new ShapeDataConverter());
+        DataConverterManager.INSTANCE.register(Circle.class, new CircleDataConverter());
+
+        assertThat(DataConverterManager.INSTANCE.lookup(Circle.class)).isExactlyInstanceOf(CircleDataConverter.class);
+        assertThat(DataConverterManager.INSTANCE.lookup(Shape.class)).isExactlyInstanceOf(ShapeDataConverter.class);
+    }
+
     class NonExist {
     }
 
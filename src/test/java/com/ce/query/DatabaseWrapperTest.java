@@ -1,19 +1,36 @@
 package com.ce.query;
 
+import com.ce.query.cache.CacheStats;
+import com.ce.query.exception.QueryException;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -150,6 +167,429 @@ public class DatabaseWrapperTest {
         assertThat(row.get("name")).isNotEqualTo("TEST 1 NEW NAME");
     }
 
+    @Test
+    public void givenStatementCache_whenRepeatUpdate_thenStatementReused() {
+        DatabaseWrapper wrapper = new DatabaseWrapper(dataSource);
+        wrapper.setStatementCacheSize(16);
+
+        wrapper.transaction(connection -> {
+            for (int i = 0; i < 100; i++) {
+                Query.connect(connection)
+                        .param("id", 1)
+                        .param("age", i)
+                        .executeUpdate("update people set age = :age where id = :id");
+            }
+        });
+
+        CacheStats stats = wrapper.getStatementCacheStats();
+        assertThat(stats.getMissCount()).isEqualTo(1);
+        assertThat(stats.getHitCount()).isEqualTo(99);
+
+        Row row = wrapper.execute((Connection connection) -> Query.connect(connection)
+                .table("people")
+                .where("id", 1)
+                .first());
+        assertThat(row.get("age")).isEqualTo(99);
+    }
+
+    @Test
+    public void givenStatementCache_whenReused_thenSettingsRestored() {
+        DatabaseWrapper wrapper = new DatabaseWrapper(dataSource);
+        wrapper.setStatementCacheSize(16);
+
+        wrapper.execute((Connection connection) -> {
+            String sql = "select * from people where id = ?";
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int fetchSize = statement.getFetchSize();
+            int queryTimeout = statement.getQueryTimeout();
+            statement.setFetchSize(fetchSize + 50);
+            statement.setQueryTimeout(queryTimeout + 7);
+            statement.setMaxRows(3);
+            statement.close();
+
+            PreparedStatement reused = connection.prepareStatement(sql);
+            assertThat(reused.getFetchSize()).isEqualTo(fetchSize);
+            assertThat(reused.getQueryTimeout()).isEqualTo(queryTimeout);
+            assertThat(reused.getMaxRows()).isEqualTo(0);
+            reused.close();
+        });
+
+        assertThat(wrapper.getStatementCacheStats().getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenDetachedQuery_whenAsync_thenRunConcurrently() throws ExecutionException, InterruptedException {
+        CompletableFuture<List<People>> peoples = Query.with(databaseWrapper)
+                .table("people")
+                .allAsync(new PeopleRowMapping());
+        CompletableFuture<Integer> studentCount = Query.with(databaseWrapper)
+                .table("student")
+                .countAsync();
+        CompletableFuture<List<Row>> scores = Query.with(databaseWrapper)
+                .table("exam_score")
+                .where("student_id", 2)
+                .getAsync();
+
+        CompletableFuture.allOf(peoples, studentCount, scores).get();
+
+        assertThat(peoples.get().size()).isEqualTo(4);
+        assertThat(studentCount.get()).isEqualTo(3);
+        assertThat(scores.get().size()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenDetachedQuery_whenExecuteUpdateAsync_thenUpdated() throws ExecutionException, InterruptedException {
+        int updated = Query.with(databaseWrapper)
+                .param("id", 1)
+                .executeUpdateAsync("update people set age = 50 where id = :id")
+                .get();
+        assertThat(updated).isEqualTo(1);
+
+        Row row = Query.with(databaseWrapper)
+                .table("people")
+                .where("id", 1)
+                .first();
+        assertThat(row.get("age")).isEqualTo(50);
+    }
+
+    @Test
+    public void executeAsync() throws ExecutionException, InterruptedException {
+        int count = databaseWrapper.executeAsync(connection -> Query.connect(connection)
+                .table("people")
+                .count())
+                .get();
+        assertThat(count).isEqualTo(4);
+    }
+
+    @Test
+    public void resultCache() {
+        DatabaseWrapper wrapper = new DatabaseWrapper(dataSource);
+        wrapper.setResultCacheSize(1024 * 1024);
+
+        List<Row> rows = Query.with(wrapper)
+                .table("people")
+                .cacheFor(Duration.ofMinutes(1))
+                .all();
+        assertThat(rows.size()).isEqualTo(4);
+        rows.get(0).put("name", "changed");
+
+        rows = Query.with(wrapper)
+                .table("people")
+                .cacheFor(Duration.ofMinutes(1))
+                .all();
+        assertThat(rows.get(0).get("name")).isEqualTo("TEST 1");
+
+        Query.with(wrapper)
+                .param("id", 1)
+                .executeUpdate("delete from people where id = :id");
+
+        rows = Query.with(wrapper)
+                .table("people")
+                .cacheFor(Duration.ofMinutes(1))
+                .all();
+        assertThat(rows.size()).isEqualTo(3);
+
+        for (int i = 0; i < 2; i++) {
+            int count = wrapper.execute((Connection conn) -> Query.connect(conn)
+                    .table("people")
+                    .cacheFor(Duration.ofMinutes(1))
+                    .count());
+            assertThat(count).isEqualTo(3);
+        }
+
+        QueryResultCache cache = wrapper.getResultCache();
+        assertThat(cache.getStats().getHitCount()).isEqualTo(2);
+        assertThat(cache.getStats().getMissCount()).isEqualTo(3);
+        assertThat(cache.getEstimatedBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void parallelAll() {
+        Query.with(databaseWrapper)
+                .execute("insert into people values (null, 'TEST 5', 5)");
+
+        List<Row> rows = Query.with(databaseWrapper)
+                .table("people")
+                .where("age < 5 or age = 5")
+                .orderBy("id", "asc")
+                .parallelAll("id", 3);
+        assertThat(rows.stream().map(row -> row.get("age")).collect(Collectors.toList()))
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+        assertThat(rows.get(rows.size() - 1).get("id")).isEqualTo(4);
+
+        try (Stream<Row> stream = Query.with(databaseWrapper)
+                .table("people")
+                .parallelStream("id", 2)) {
+            assertThat(stream.mapToInt(row -> (Integer) row.get("age")).sum()).isEqualTo(15);
+        }
+
+        try (Stream<Row> stream = Query.with(databaseWrapper)
+                .table("people")
+                .parallelStream("id", 4)) {
+            assertThat(stream.findFirst().isPresent()).isTrue();
+        }
+    }
+
+    @Test
+    public void givenGroupBy_whenParallelAll_thenPartitionedByWholeRange() {
+        List<Row> rows = Query.with(databaseWrapper)
+                .table("people")
+                .select("age, count(*) total")
+                .groupBy("age")
+                .parallelAll("age", 2);
+        assertThat(rows.stream().map(row -> row.get("age")).collect(Collectors.toList()))
+                .containsExactlyInAnyOrder(1, 2, 3, 4);
+    }
+
+    @Test
+    public void givenRejectingExecutor_whenParallel_thenQueryException() {
+        Query query = Query.with(databaseWrapper)
+                .table("people")
+                .executor(task -> {
+                    throw new RejectedExecutionException("saturated");
+                });
+        assertThatExceptionOfType(QueryException.class).isThrownBy(() -> query.parallelAll("id", 2));
+        assertThatExceptionOfType(QueryException.class).isThrownBy(() -> query.parallelStream("id", 2));
+    }
+
+    @Test
+    public void givenDetachedQuery_whenSeekAfter_thenRendered() {
+        Query query = Query.with(databaseWrapper)
+                .table("people")
+                .seekAfter(new String[]{"id"}, new Object[]{2}, 10);
+        assertThat(query.toSql()).contains("id > :seek__0000");
+
+        List<Row> rows = query.all();
+        assertThat(rows.size()).isEqualTo(2);
+        assertThat(rows.get(0).get("id")).isEqualTo(3);
+        assertThat(query.seekPage().getRows().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenDetachedQuery_whenWhereIn_thenRenderedLikeAttached() {
+        Integer[] ids = new Integer[1300];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 3;
+        }
+
+        Query detached = Query.with(databaseWrapper).table("people").whereIn("id", ids);
+        String attachedSql = databaseWrapper.execute((Connection conn) -> Query.connect(conn)
+                .table("people")
+                .whereIn("id", ids)
+                .toSql());
+        assertThat(detached.toSql()).isEqualTo(attachedSql);
+        assertThat(detached.all().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void paginateWithTotal() {
+        PageResult result = Query.with(databaseWrapper)
+                .table("people")
+                .where("age > 1")
+                .orderBy("id", "asc")
+                .paginateWithTotal(1, 2);
+        assertThat(result.getRows().size()).isEqualTo(2);
+        assertThat(result.getRows().get(0).get("id")).isEqualTo(2);
+        assertThat(result.getTotal()).isEqualTo(3);
+        assertThat(result.isTotalExact()).isTrue();
+    }
+
+    @Test
+    public void givenConcurrentWrites_whenCoalesced_thenCommittedInFewTransactions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Integer>> futures;
+        CompletableFuture<Integer> failed;
+        WriteCoalescer coalescer = new WriteCoalescer(databaseWrapper, 50, 20, 1000);
+        try {
+            futures = IntStream.range(0, 200)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                        Map<String, Object> row = new HashMap<>();
+                        row.put("id", 100 + i);
+                        row.put("name", "coalesced " + i);
+                        return row;
+                    }, executor).thenCompose(row -> coalescer.submit(
+                            "insert into people (id, name, age) values (:id, :name, :age)", row)))
+                    .collect(Collectors.toList());
+            failed = coalescer.submit("insert into missing_table (id) values (:id)", Collections.singletonMap("id", 1));
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } finally {
+            coalescer.close();
+            executor.shutdown();
+        }
+
+        for (CompletableFuture<Integer> future : futures) {
+            assertThat(future.get()).isEqualTo(1);
+        }
+        assertThatExceptionOfType(ExecutionException.class).isThrownBy(failed::get);
+        assertThat(coalescer.getWriteCount()).isEqualTo(201);
+        assertThat(coalescer.getFlushCount()).isLessThan(201);
+
+        int count = databaseWrapper.execute((Connection conn) -> Query.connect(conn)
+                .table("people")
+                .where("age is null")
+                .count());
+        assertThat(count).isEqualTo(200);
+    }
+
+    @Test
+    public void givenLargeWhereIn_whenTransactionFailed_thenRolledBack() {
+        Integer[] ids = new Integer[20000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> databaseWrapper.transaction((Connection conn) -> {
+            Query.connect(conn).executeUpdate("update people set age = 10 where id = 1");
+            assertThat(Query.connect(conn).table("people").whereIn("id", ids).count()).isEqualTo(4);
+            throw new IllegalStateException("rollback");
+        }));
+
+        int age = databaseWrapper.execute((Connection conn) -> Query.connect(conn)
+                .table("people")
+                .where("id", 1)
+                .first()
+                .getInt("age"));
+        assertThat(age).isEqualTo(1);
+    }
+
+    @Test
+    public void givenNestedTransaction_whenFailed_thenOnlyNestedScopeRolledBack() {
+        databaseWrapper.transaction((Connection conn) -> {
+            Query.connect(conn).executeUpdate("update people set age = 10 where id = 1");
+            try {
+                databaseWrapper.transaction((Connection inner) -> {
+                    Query.connect(inner).executeUpdate("update people set age = 20 where id = 2");
+                    throw new IllegalStateException("nested failure");
+                });
+            } catch (IllegalStateException e) {
+                // the outer transaction goes on
+            }
+            databaseWrapper.transaction((Connection inner) -> {
+                Query.connect(inner).executeUpdate("update people set age = 30 where id = 3");
+            });
+        });
+
+        List<Row> rows = Query.with(databaseWrapper).table("people").orderBy("id", "asc").all();
+        assertThat(rows.get(0).get("age")).isEqualTo(10);
+        assertThat(rows.get(1).get("age")).isEqualTo(2);
+        assertThat(rows.get(2).get("age")).isEqualTo(30);
+    }
+
+    @Test
+    public void givenRetryPolicy_whenTransientFailure_thenTransactionRetried() {
+        DatabaseWrapper wrapper = new DatabaseWrapper(dataSource);
+        wrapper.setRetryPolicy(new RetryPolicy(3, 1, 5));
+        AtomicInteger attempts = new AtomicInteger();
+
+        int age = wrapper.transaction((Connection conn) -> {
+            Query.connect(conn).executeUpdate("update people set age = age + 1 where id = 1");
+            if (attempts.incrementAndGet() < 3) {
+                throw new SQLException("deadlock detected", "40001");
+            }
+            return Query.connect(conn).table("people").where("id", 1).first().getInt("age");
+        });
+        // failed attempts are rolled back
+        assertThat(age).isEqualTo(2);
+        assertThat(attempts.get()).isEqualTo(3);
+
+        // not transient, or out of attempts
+        attempts.set(0);
+        assertThatExceptionOfType(QueryException.class).isThrownBy(() -> wrapper.transaction((Connection conn) -> {
+            attempts.incrementAndGet();
+            throw new SQLException("syntax error", "42000");
+        }));
+        assertThat(attempts.get()).isEqualTo(1);
+
+        attempts.set(0);
+        assertThatExceptionOfType(QueryException.class).isThrownBy(() -> wrapper.transaction((Connection conn) -> {
+            attempts.incrementAndGet();
+            throw new SQLException("deadlock detected", "40P01");
+        }));
+        assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenTransientFailureInNestedScope_whenRetried_thenOutermostRunsAgain() {
+        DatabaseWrapper wrapper = new DatabaseWrapper(dataSource);
+        wrapper.setRetryPolicy(new RetryPolicy(3, 1, 5));
+        AtomicInteger outer = new AtomicInteger();
+        AtomicInteger inner = new AtomicInteger();
+
+        wrapper.transaction((Connection conn) -> {
+            outer.incrementAndGet();
+            wrapper.transaction((Connection nested) -> {
+                if (inner.incrementAndGet() == 1) {
+                    throw new SQLException("deadlock detected", "40001");
+                }
+            });
+        });
+        // the nested scope is not retried on its own
+        assertThat(outer.get()).isEqualTo(2);
+        assertThat(inner.get()).isEqualTo(2);
+
+        // failure caught by the outer transaction is not retried
+        outer.set(0);
+        inner.set(0);
+        wrapper.transaction((Connection conn) -> {
+            outer.incrementAndGet();
+            try {
+                wrapper.transaction((Connection nested) -> {
+                    inner.incrementAndGet();
+                    throw new SQLException("deadlock detected", "40001");
+                });
+            } catch (QueryException e) {
+                // handled
+            }
+        });
+        assertThat(outer.get()).isEqualTo(1);
+        assertThat(inner.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenNoSavepointSupport_whenNestedTransaction_thenJoined() {
+        // driver without savepoints, metadata tells so and setSavepoint is refused
+        DataSource noSavepoints = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    if (!(result instanceof Connection)) return result;
+                    Connection connection = (Connection) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (p, m, a) -> {
+                                if ("setSavepoint".equals(m.getName()))
+                                    throw new SQLFeatureNotSupportedException("no savepoints");
+                                if ("getMetaData".equals(m.getName())) {
+                                    DatabaseMetaData metaData = connection.getMetaData();
+                                    return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                            new Class<?>[]{DatabaseMetaData.class},
+                                            (mp, mm, ma) -> "supportsSavepoints".equals(mm.getName())
+                                                    ? Boolean.FALSE : invoke(metaData, mm, ma));
+                                }
+                                return invoke(connection, m, a);
+                            });
+                });
+        DatabaseWrapper wrapper = new DatabaseWrapper(noSavepoints);
+
+        wrapper.transaction((Connection conn) -> {
+            Query.connect(conn).executeUpdate("update people set age = 10 where id = 1");
+            wrapper.transaction((Connection nested) -> {
+                Query.connect(nested).executeUpdate("update people set age = 20 where id = 2");
+            });
+        });
+
+        List<Row> rows = Query.with(wrapper).table("people").orderBy("id", "asc").all();
+        assertThat(rows.get(0).get("age")).isEqualTo(10);
+        assertThat(rows.get(1).get("age")).isEqualTo(20);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
     @Test
     public void givenNumber_whenCountDownTimes_thenNumberCountTo0() throws InterruptedException {
         int number = 500;
@@ -0,0 +1,80 @@
+package com.ce.query;
+
+import com.ce.query.cache.CacheStats;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NamedParameterStatementTest {
+
+    @Test
+    public void parse() {
+        Map<String, int[]> map = new HashMap<>();
+        String sql = NamedParameterStatement.parse(
+                "select * from people where name = :name and note = ':ignored' and (age = :age or id = :age)", map);
+
+        assertThat(sql).isEqualTo("select * from people where name = ? and note = ':ignored' and (age = ? or id = ?)");
+        assertThat(map).containsOnlyKeys("name", "age");
+        assertThat(map.get("name")).containsExactly(1);
+        assertThat(map.get("age")).containsExactly(2, 3);
+    }
+
+    @Test
+    public void givenSameQuery_whenParseTwice_thenCacheHit() {
+        String query = "select * from people where id = :id and age > :age";
+        CacheStats stats = NamedParameterStatement.getParseCacheStats();
+        long hits = stats.getHitCount();
+
+        ParsedSql first = NamedParameterStatement.parse(query);
+        ParsedSql second = NamedParameterStatement.parse(query);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.sql).isEqualTo("select * from people where id = ? and age > ?");
+        assertThat(second.parameterCount).isEqualTo(2);
+        assertThat(stats.getHitCount()).isGreaterThan(hits);
+    }
+
+    @Test
+    public void bindingPlan() throws SQLException {
+        ParsedSql parsed = NamedParameterStatement.parse("select * from people where age > :age and (id = :id or age < :age)");
+
+        assertThat(parsed.slotNames).containsExactlyInAnyOrder("age", "id");
+        assertThat(parsed.positionNames).containsExactly("age", "id", "age");
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:bindDb")) {
+            NamedParameterStatement statement = new NamedParameterStatement(connection,
+                    "select :id id, :name name, :at at");
+            try {
+                Map<String, Object> params = new HashMap<>();
+                params.put("id", 7L);
+                params.put("name", "test");
+                params.put("at", new java.util.Date(0));
+                params.put("ignored", 1);
+                statement.bind(params, false);
+                try (ResultSet rs = statement.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getLong("id")).isEqualTo(7L);
+                }
+
+                // null does not depend on values bound before
+                params.put("id", null);
+                statement.bind(params, false);
+                try (ResultSet rs = statement.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getObject("id")).isNull();
+                    assertThat(rs.getString("name")).isEqualTo("test");
+                    assertThat(rs.getTimestamp("at").getTime()).isEqualTo(0);
+                }
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
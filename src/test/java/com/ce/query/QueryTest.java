@@ -1,18 +1,31 @@
 package com.ce.query;
 
+import com.ce.query.exception.ConvertException;
+import com.ce.query.exception.QueryException;
+import com.ce.query.grammar.AbstractGrammar;
+import com.ce.query.grammar.DefaultGrammar;
+import com.ce.query.grammar.InListStrategy;
+import com.ce.query.grammar.OracleGrammar;
+import com.ce.query.grammar.PostgreSQLGrammar;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 public class QueryTest {
@@ -137,6 +150,45 @@ public class QueryTest {
         assertThat(rows.size()).isEqualTo(4);
     }
 
+    @Test
+    public void duplicatedLabel() {
+        Row row = Query.connect(connection)
+                .statement("select id, name as id, age from people where id = 1")
+                .first();
+
+        assertThat(row.size()).isEqualTo(2);
+        assertThat(row.get("id")).isEqualTo(1);
+        assertThat(row.keySet()).containsExactly("id", "age");
+    }
+
+    @Test
+    public void rowMapSemantics() {
+        List<Row> rows = Query.connect(connection)
+                .table("people")
+                .select("id, name, age")
+                .orderBy("id", "asc")
+                .get();
+        Row row = rows.get(0);
+
+        assertThat(row.getSchema()).isSameAs(rows.get(1).getSchema());
+
+        assertThat(row.remove("age")).isEqualTo(1);
+        assertThat(row.containsKey("age")).isFalse();
+        assertThat(row.size()).isEqualTo(2);
+        assertThat(rows.get(1).containsKey("age")).isTrue();
+
+        row.put("age", 10);
+        row.put("extra", "value");
+        assertThat(row.getSchema()).isNull();
+        assertThat(row).containsEntry("age", 10).containsEntry("extra", "value").hasSize(4);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("id", 2);
+        expected.put("name", "TEST 2");
+        expected.put("age", 2);
+        assertThat(rows.get(1)).isEqualTo(expected);
+    }
+
     @Test
     public void whereRaw() {
         List<Row> rows = Query.connect(connection)
@@ -173,6 +225,74 @@ public class QueryTest {
         assertThat(nextRows.size()).isEqualTo(0);
     }
 
+    @Test
+    public void whereInSameColumn() {
+        // each list binds its own params
+        Query query = Query.connect(connection)
+                .table("people")
+                .whereIn("id", new Integer[]{1, 2})
+                .whereAny(any -> any.in("id", new Object[]{2, 3}));
+        List<Row> rows = query.get();
+        assertThat(rows.size()).isEqualTo(1);
+        assertThat(rows.get(0).get("id")).isEqualTo(2);
+        assertThat(query.toSql()).contains(":where__0000").contains(":where__0003");
+    }
+
+    @Test
+    public void whereInLargeList() {
+        // blocks of the max IN list size, last block padded by repeating its last value
+        Integer[] ids = new Integer[1300];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 3;
+        }
+        Query query = Query.connect(connection)
+                .table("people")
+                .whereIn("id", ids);
+        assertThat(query.toSql()).contains(" or id in (").contains(":where__1535").doesNotContain(":where__1536");
+        assertThat(query.count()).isEqualTo(2);
+
+        // only grammars with transactional DDL stage very large lists, others expand them
+        Integer[] large = new Integer[20000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = i + 2;
+        }
+        query = Query.connect(connection)
+                .table("people")
+                .whereIn("id", large);
+        assertThat(query.toSql()).doesNotContain("query_in__");
+        assertThat(query.count()).isEqualTo(3);
+        assertThat(new DefaultGrammar().chooseInListStrategy(large.length)).isEqualTo(InListStrategy.EXPAND);
+        assertThat(new PostgreSQLGrammar().chooseInListStrategy(large.length)).isEqualTo(InListStrategy.TEMPORARY_TABLE);
+    }
+
+    @Test
+    public void whereTree() {
+        List<Row> rows = Query.connect(connection)
+                .table("people")
+                .where("age", ">", 1)
+                .whereBetween("id", 1, 4)
+                .whereNotNull("name")
+                .whereAny(any -> any
+                        .where("name", "TEST 2")
+                        .all(all -> all.where("age", ">=", 4).isNull("name"))
+                        .in("id", new Object[]{3}))
+                .orderBy("id", "asc")
+                .get();
+        assertThat(rows.size()).isEqualTo(2);
+        assertThat(rows.get(0).get("id")).isEqualTo(2);
+        assertThat(rows.get(1).get("id")).isEqualTo(3);
+
+        Query query = Query.connect(connection)
+                .table("people")
+                .where("age", "!=", 2)
+                .whereNull("name");
+        assertThat(query.toSql()).contains("age <> :where__0000").contains("name is null");
+        assertThat(query.count()).isEqualTo(0);
+
+        assertThatThrownBy(() -> Query.connect(connection).where("age", "like", 2))
+                .isInstanceOf(QueryException.class);
+    }
+
     @Test
     public void whereLike() {
         List<Row> rows = Query.connect(connection)
@@ -214,6 +334,35 @@ public class QueryTest {
         assertThat(rows.get(1).getAs("sum", Integer.class)).isEqualTo(90);
     }
 
+    @Test
+    public void primitiveGetters() {
+        Row row = Query.connect(connection)
+                .table("people")
+                .select("id, age, name, null as nothing")
+                .where("id", 2)
+                .first();
+
+        assertThat(row.getInt("id")).isEqualTo(2);
+        assertThat(row.getLong("age")).isEqualTo(2L);
+        assertThat(row.getDouble("age")).isEqualTo(2D);
+        assertThat(row.getBoolean("id")).isTrue();
+        assertThat(row.getInt("nothing")).isEqualTo(0);
+        assertThat(row.getInt("nothing", -1)).isEqualTo(-1);
+        assertThat(row.getBoolean("nothing", true)).isTrue();
+        assertThatThrownBy(() -> row.getInt("name"))
+                .isExactlyInstanceOf(ConvertException.class);
+        // out of range values are rejected, not truncated
+        Row values = new Row();
+        values.put("big", 3000000000L);
+        values.put("decimal", new BigDecimal("1e20"));
+        assertThat(values.getLong("big")).isEqualTo(3000000000L);
+        assertThatThrownBy(() -> values.getInt("big"))
+                .isExactlyInstanceOf(ConvertException.class);
+        assertThatThrownBy(() -> values.getLong("decimal"))
+                .isExactlyInstanceOf(ConvertException.class);
+        assertThat(values.getBoolean("big")).isTrue();
+    }
+
     @Test
     public void param() {
         List<Row> rows = Query.connect(connection)
@@ -278,6 +427,378 @@ public class QueryTest {
         assertThat(people.id).isEqualTo(1);
     }
 
+    @Test
+    public void firstWithOrder() {
+        Row row = Query.connect(connection)
+                .table("people")
+                .orderBy("id", "desc")
+                .first();
+
+        assertThat(row.getAs("id", Integer.class)).isEqualTo(4);
+    }
+
+    @Test
+    public void exists() {
+        boolean exists = Query.connect(connection)
+                .table("people")
+                .where("name", "TEST 1")
+                .exists();
+        assertThat(exists).isTrue();
+
+        exists = Query.connect(connection)
+                .table("people")
+                .where("name", "NOBODY")
+                .exists();
+        assertThat(exists).isFalse();
+    }
+
+    @Test
+    public void sole() {
+        People people = Query.connect(connection)
+                .table("people")
+                .where("id", 2)
+                .sole(new PeopleRowMapping());
+        assertThat(people.name).isEqualTo("TEST 2");
+
+        assertThatThrownBy(() -> Query.connect(connection)
+                .table("people")
+                .sole())
+                .isExactlyInstanceOf(QueryException.class)
+                .hasMessage("more than one row found");
+
+        assertThatThrownBy(() -> Query.connect(connection)
+                .table("people")
+                .where("id", 100)
+                .sole())
+                .isExactlyInstanceOf(QueryException.class)
+                .hasMessage("no row found");
+    }
+
+    @Test
+    public void cursor() {
+        RowCursor cursor = Query.connect(connection)
+                .table("people")
+                .orderBy("id", "asc")
+                .cursor();
+
+        assertThat(cursor.hasNext()).isTrue();
+        assertThat(cursor.next().get("id")).isEqualTo(1);
+
+        cursor.close();
+        assertThat(cursor.isClosed()).isTrue();
+        assertThat(cursor.hasNext()).isFalse();
+    }
+
+    @Test
+    public void cursorClosedWhenDrained() {
+        RowCursor cursor = Query.connect(connection)
+                .table("people")
+                .cursor();
+
+        int size = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            size++;
+        }
+
+        assertThat(size).isEqualTo(4);
+        assertThat(cursor.isClosed()).isTrue();
+    }
+
+    @Test
+    public void stream() {
+        try (Stream<People> stream = Query.connect(connection)
+                .table("people")
+                .where("age > :age")
+                .param("age", 1)
+                .stream(new PeopleRowMapping())) {
+            List<String> names = stream.map(p -> p.name).collect(Collectors.toList());
+            assertThat(names).containsExactly("TEST 2", "TEST 3", "TEST 4");
+        }
+    }
+
+    @Test
+    public void forEach() {
+        List<People> list = new ArrayList<>();
+        Query.connect(connection)
+                .table("people")
+                .forEach(new PeopleRowMapping(), list::add);
+
+        assertThat(list.size()).isEqualTo(4);
+        assertThat(list.get(0).name).isEqualTo("TEST 1");
+    }
+
+    @Test
+    public void compile() {
+        CompiledQuery compiled = Query.connect(connection)
+                .table("people")
+                .where("age > :age")
+                .param("age", 1)
+                .orderBy("id", "asc")
+                .compile();
+
+        List<Row> rows = compiled.bind().all(connection);
+        assertThat(rows.size()).isEqualTo(3);
+
+        List<People> list = compiled.bind(Collections.singletonMap("age", 3)).all(connection, new PeopleRowMapping());
+        assertThat(list.size()).isEqualTo(1);
+        assertThat(list.get(0).id).isEqualTo(4);
+    }
+
+    @Test
+    public void compileWithMissingParam() {
+        CompiledQuery compiled = Query.connect(connection)
+                .table("people")
+                .where("age > :age")
+                .compile();
+
+        assertThatThrownBy(compiled::bind)
+                .isExactlyInstanceOf(QueryException.class)
+                .hasMessage("parameter age is not bound");
+    }
+
+    @Test
+    public void insertAndUpdateBatch() {
+        Query.connect(connection)
+                .execute("create table batch_people (id integer, name varchar, age integer)");
+        try {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("id", i);
+                row.put("name", "BATCH " + i);
+                row.put("age", i);
+                rows.add(row);
+            }
+
+            int[] inserted = Query.connect(connection)
+                    .table("batch_people")
+                    .insertBatch(rows, 3);
+            assertThat(inserted).hasSize(10).containsOnly(1);
+
+            for (Map<String, Object> row : rows) {
+                row.put("age", 100);
+            }
+            int[] updated = Query.connect(connection)
+                    .table("batch_people")
+                    .adaptiveBatch(5)
+                    .updateBatch(rows, 4, "id = :id");
+            assertThat(updated).hasSize(10).containsOnly(1);
+
+            int count = Query.connect(connection)
+                    .table("batch_people")
+                    .where("age", 100)
+                    .count();
+            assertThat(count).isEqualTo(10);
+        } finally {
+            Query.connect(connection)
+                    .execute("drop table batch_people");
+        }
+    }
+
+    @Test
+    public void bulkInsert() {
+        Query.connect(connection)
+                .execute("create table bulk_people (id integer, name varchar, age integer)");
+        try {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int i = 1; i <= 13; i++) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("id", i);
+                row.put("name", "BULK " + i);
+                row.put("age", i);
+                rows.add(row);
+            }
+
+            int inserted = Query.connect(connection)
+                    .table("bulk_people")
+                    .bulkInsert(rows, 4);
+            assertThat(inserted).isEqualTo(13);
+
+            Row last = Query.connect(connection)
+                    .table("bulk_people")
+                    .where("id", 13)
+                    .sole();
+            assertThat(last.get("name")).isEqualTo("BULK 13");
+
+            assertThat(Query.connect(connection)
+                    .table("bulk_people")
+                    .bulkInsert(rows.subList(0, 3))).isEqualTo(3);
+            assertThat(Query.connect(connection)
+                    .table("bulk_people")
+                    .count()).isEqualTo(16);
+        } finally {
+            Query.connect(connection)
+                    .execute("drop table bulk_people");
+        }
+
+        StringBuilder buffer = new StringBuilder();
+        new OracleGrammar().handleMultiRowInsert(buffer, "people", new String[]{"id", "name"},
+                SQLHelper.generateRowsOfNamedParameters(new String[]{"id", "name"}, 2));
+        assertThat(buffer.toString()).isEqualTo("insert all" +
+                " into people (id, name) values (:id__0000, :name__0000)" +
+                " into people (id, name) values (:id__0001, :name__0001)" +
+                " select 1 from dual");
+    }
+
+    @Test
+    public void givenGrammarOfStringBuffer_whenPaginate_thenLegacyOverrideUsed() {
+        AbstractGrammar legacy = new AbstractGrammar() {
+            @Override
+            public String getDatabaseProductName() {
+                return "legacy";
+            }
+
+            @Override
+            public void handleTake(StringBuffer buffer, int take) {
+                buffer.append(" limit ").append(take);
+            }
+        };
+
+        StringBuilder buffer = new StringBuilder("select * from people");
+        legacy.handleSkip(buffer, 2);
+        legacy.handleTake(buffer, 3);
+        assertThat(buffer.toString()).isEqualTo("select * from people offset 2 rows  limit 3");
+    }
+
+    @Test
+    public void fetchSize() {
+        List<Row> rows = Query.connect(connection)
+                .table("people")
+                .fetchSize(2)
+                .forwardOnly()
+                .readOnly()
+                .all();
+        assertThat(rows.size()).isEqualTo(4);
+
+        try (Stream<Row> stream = Query.connect(connection)
+                .table("people")
+                .adaptiveFetchSize(1024)
+                .stream()) {
+            assertThat(stream.count()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void beanMapper() {
+        List<People> list = Query.connect(connection)
+                .table("people")
+                .orderBy("id", "asc")
+                .all(RowMappers.forClass(People.class));
+        assertThat(list.size()).isEqualTo(4);
+        assertThat(list.get(0).id).isEqualTo(1);
+        assertThat(list.get(0).name).isEqualTo("TEST 1");
+        assertThat(list.get(3).age).isEqualTo(4);
+
+        assertThat(RowMappers.forClass(People.class)).isSameAs(RowMappers.forClass(People.class));
+
+        ScoreBean score = Query.connect(connection)
+                .select("id, student_id, score, null as note")
+                .table("exam_score")
+                .where("id", 2)
+                .sole(RowMappers.forClass(ScoreBean.class));
+        assertThat(score.id).isEqualTo(2L);
+        assertThat(score.studentId).isEqualTo(2);
+        assertThat(score.score).isEqualTo(20.0);
+        assertThat(score.note).isEqualTo("none");
+
+        Row row = Query.connect(connection)
+                .table("exam_score")
+                .where("id", 3)
+                .first();
+        assertThat(RowMappers.forClass(ScoreBean.class).map(row).studentId).isEqualTo(2);
+        assertThat(RowMappers.forClass(ScoreBean.class).map(null)).isNull();
+    }
+
+    static class ScoreBean {
+        long id;
+        int studentId;
+        double score;
+        String note = "none";
+
+        public void setStudentId(int studentId) {
+            this.studentId = studentId;
+        }
+    }
+
+    @Test
+    public void seekAfter() {
+        String[] columns = {"age desc", "id"};
+
+        SeekPage page = Query.connect(connection)
+                .table("people")
+                .seekAfter(columns, (String) null, 3)
+                .seekPage();
+        assertThat(page.getRows().stream().map(row -> row.get("id")).collect(Collectors.toList()))
+                .containsExactly(4, 3, 2);
+        assertThat(page.hasNext()).isTrue();
+
+        page = Query.connect(connection)
+                .table("people")
+                .seekAfter(columns, page.getNextToken(), 3)
+                .seekPage();
+        assertThat(page.getRows().size()).isEqualTo(1);
+        assertThat(page.getRows().get(0).get("id")).isEqualTo(1);
+        assertThat(page.getNextToken()).isNull();
+
+        List<Row> rows = Query.connect(connection)
+                .table("people")
+                .seekAfter(new String[]{"id"}, new Object[]{2}, 10)
+                .get();
+        assertThat(rows.size()).isEqualTo(2);
+        assertThat(rows.get(0).get("id")).isEqualTo(3);
+
+        assertThatThrownBy(() -> Query.connect(connection)
+                .table("people")
+                .seekAfter(columns, "not a token", 3))
+                .isInstanceOf(QueryException.class);
+    }
+
+    @Test
+    public void givenOrCriteria_whenSeekAfter_thenSeekAppliesToAll() {
+        Query query = Query.connect(connection)
+                .table("people")
+                .where("age = 1 or age = 4")
+                .whereAny(any -> any.where("id", 1).where("id", 4))
+                .seekAfter(new String[]{"id"}, new Object[]{2}, 10);
+        List<Row> rows = query.get();
+        assertThat(rows.stream().map(row -> row.get("id")).collect(Collectors.toList())).containsExactly(4);
+        assertThat(query.toSql()).contains(" where  ( ");
+    }
+
+    @Test
+    public void seekToken() {
+        Object[] values = {null, "name", 1, 2L, 1.5, new java.math.BigDecimal("10.25"), true,
+                java.sql.Timestamp.valueOf("2020-01-02 03:04:05.123456789")};
+        assertThat(SeekToken.decode(SeekToken.encode(values))).containsExactly(values);
+    }
+
+    @Test
+    public void paginateWithTotal() {
+        PageResult result = Query.connect(connection)
+                .table("people")
+                .orderBy("id", "asc")
+                .paginateWithTotal(2, 3);
+        assertThat(result.getRows().size()).isEqualTo(1);
+        assertThat(result.getRows().get(0).get("id")).isEqualTo(4);
+        assertThat(result.getTotal()).isEqualTo(4);
+        assertThat(result.isTotalExact()).isTrue();
+
+        result = Query.connect(connection)
+                .table("people")
+                .paginateWithTotal(1, 2, 2);
+        assertThat(result.getRows().size()).isEqualTo(2);
+        assertThat(result.getTotal()).isEqualTo(3);
+        assertThat(result.isTotalExact()).isFalse();
+
+        result = Query.connect(connection)
+                .table("exam_score")
+                .select("student_id")
+                .groupBy("student_id")
+                .paginateWithTotal(1, 10);
+        assertThat(result.getTotal()).isEqualTo(2);
+    }
+
     @Test
     public void count() {
         int count = Query.connect(connection)
@@ -0,0 +1,106 @@
+package com.ce.query;
+
+import com.ce.query.exception.QueryException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoutingDatabaseWrapperTest {
+
+    RoutingDatabaseWrapper wrapper;
+
+    private static JdbcDataSource dataSource(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+
+        // each database tells its name, so the test sees where a query ran
+        try (Connection conn = dataSource.getConnection()) {
+            Query.connect(conn)
+                    .statement("drop table if exists node;" +
+                            "create table node (name varchar);" +
+                            "insert into node values ('" + name + "');")
+                    .execute();
+        }
+        return dataSource;
+    }
+
+    @Before
+    public void before() throws SQLException {
+        wrapper = new RoutingDatabaseWrapper(dataSource("primaryDb"), dataSource("replicaDb1"), dataSource("replicaDb2"));
+    }
+
+    private String readNode() {
+        return Query.with(wrapper).table("node").first().get("name").toString();
+    }
+
+    @Test
+    public void givenReads_whenOutsideTransaction_thenRoutedToReplicas() {
+        assertThat(readNode()).startsWith("replicaDb");
+        assertThat(wrapper.executeReadOnly((Connection conn) -> Query.connect(conn).table("node").first().get("name").toString()))
+                .startsWith("replicaDb");
+
+        // reads in a transaction, or in execute, run on primary
+        assertThat(wrapper.transaction((Connection conn) -> readNode())).isEqualTo("primaryDb");
+        assertThat(wrapper.execute((Connection conn) -> readNode())).isEqualTo("primaryDb");
+
+        assertThat(wrapper.getOutstanding(0)).isEqualTo(0);
+        assertThat(wrapper.getOutstanding(1)).isEqualTo(0);
+    }
+
+    @Test
+    public void givenBusyReplica_whenRead_thenLeastOutstandingReplicaUsed() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> busy = CompletableFuture.supplyAsync(() -> wrapper.executeReadOnly((Connection conn) -> {
+            opened.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Query.connect(conn).table("node").first().get("name").toString();
+        }));
+        try {
+            assertThat(opened.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(wrapper.getOutstanding(0) + wrapper.getOutstanding(1)).isEqualTo(1);
+
+            for (int i = 0; i < 4; i++) {
+                String node = readNode();
+                String busyNode = wrapper.getOutstanding(0) == 1 ? "replicaDb1" : "replicaDb2";
+                assertThat(node).isNotEqualTo(busyNode);
+            }
+        } finally {
+            release.countDown();
+        }
+        assertThat(busy.get()).startsWith("replicaDb");
+    }
+
+    @Test
+    public void givenWrite_whenReadInStickyWindow_thenReadFromPrimary() throws InterruptedException {
+        wrapper.setStickyMillis(200);
+
+        wrapper.execute((Connection conn) -> Query.connect(conn)
+                .executeUpdate("update node set name = name"));
+        assertThat(readNode()).isEqualTo("primaryDb");
+
+        Thread.sleep(300);
+        assertThat(readNode()).startsWith("replicaDb");
+    }
+
+    @Test
+    public void givenReadOnlyExecution_whenWrite_thenRefused() {
+        assertThatThrownBy(() -> wrapper.executeReadOnly((Connection conn) ->
+                Query.with(wrapper).executeUpdate("update node set name = name")))
+                .isInstanceOf(QueryException.class);
+    }
+}
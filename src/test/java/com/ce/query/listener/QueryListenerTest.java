@@ -0,0 +1,118 @@
+package com.ce.query.listener;
+
+import com.ce.query.Query;
+import com.ce.query.Row;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryListenerTest {
+
+    Connection connection;
+    List<QueryEvent> events = new ArrayList<>();
+    QueryListener collector = events::add;
+
+    @Before
+    public void before() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:listenerDb;DB_CLOSE_DELAY=-1");
+        Query.connect(connection)
+                .statement("drop table if exists people;" +
+                        "create table people (id integer, name varchar, age integer);" +
+                        "insert into people values (1, 'TEST 1', 1);" +
+                        "insert into people values (2, 'TEST 2', 2);")
+                .execute();
+        QueryListeners.register(collector);
+    }
+
+    @After
+    public void after() throws SQLException {
+        QueryListeners.unregister(collector);
+        connection.close();
+    }
+
+    @Test
+    public void givenListener_whenQuery_thenPhasesAreTimed() {
+        List<String> names = Query.connect(connection)
+                .table("people")
+                .where("id", 1)
+                .all(row -> row.get("name").toString());
+        assertThat(names).containsExactly("TEST 1");
+
+        assertThat(events.size()).isEqualTo(1);
+        QueryEvent event = events.get(0);
+        assertThat(event.getType()).isEqualTo(QueryEvent.Type.QUERY);
+        assertThat(event.getRowCount()).isEqualTo(1);
+        assertThat(event.getFingerprint()).isEqualTo("select * from people where id = ?");
+        assertThat(event.getPhaseNanos(QueryPhase.EXECUTE)).isGreaterThan(0);
+        assertThat(event.getPhaseNanos(QueryPhase.MAPPING)).isGreaterThan(0);
+        assertThat(event.getTotalNanos()).isGreaterThanOrEqualTo(event.getPhaseNanos(QueryPhase.FETCH));
+        assertThat(event.isFailed()).isFalse();
+    }
+
+    @Test
+    public void givenToSql_whenQueryLater_thenBuildTimeIsNotStale() throws InterruptedException {
+        Query query = Query.connect(connection)
+                .table("people")
+                .where("id", 1);
+        query.toSql();
+        query.compile();
+        Thread.sleep(50);
+
+        assertThat(query.all().size()).isEqualTo(1);
+        assertThat(events.size()).isEqualTo(1);
+        assertThat(events.get(0).getPhaseNanos(QueryPhase.BUILD)).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void givenListener_whenUpdate_thenUpdateCountIsReported() {
+        Query.connect(connection)
+                .param("age", 10)
+                .executeUpdate("update people set age = :age");
+
+        assertThat(events.size()).isEqualTo(1);
+        assertThat(events.get(0).getType()).isEqualTo(QueryEvent.Type.UPDATE);
+        assertThat(events.get(0).getRowCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenHistogram_whenQueries_thenPercentilesPerFingerprint() {
+        HistogramQueryListener histograms = new HistogramQueryListener();
+        List<QueryEvent> slow = new ArrayList<>();
+        SlowQueryListener slowQueries = new SlowQueryListener(0, slow::add);
+        QueryListeners.register(histograms);
+        QueryListeners.register(slowQueries);
+        try {
+            for (int id = 1; id <= 2; id++) {
+                Row row = Query.connect(connection)
+                        .table("people")
+                        .where("id", id)
+                        .first();
+                assertThat(row).isNotNull();
+            }
+        } finally {
+            QueryListeners.unregister(histograms);
+            QueryListeners.unregister(slowQueries);
+        }
+
+        assertThat(histograms.getHistograms().size()).isEqualTo(1);
+        LatencyHistogram histogram = histograms.getHistograms().values().iterator().next();
+        assertThat(histogram.getCount()).isEqualTo(2);
+        assertThat(histogram.getP99Nanos()).isGreaterThanOrEqualTo(histogram.getP50Nanos());
+        assertThat(slow.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void fingerprint() {
+        assertThat(SqlFingerprint.of("SELECT * FROM people WHERE id IN ( :id__0000, :id__0001 ) and name = 'it''s' and age > 10"))
+                .isEqualTo("select * from people where id in ( ?+ ) and name = ? and age > ?");
+    }
+}
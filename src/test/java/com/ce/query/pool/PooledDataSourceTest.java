@@ -0,0 +1,156 @@
+package com.ce.query.pool;
+
+import com.ce.query.DatabaseWrapper;
+import com.ce.query.Query;
+import com.ce.query.exception.QueryException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PooledDataSourceTest {
+
+    PooledDataSource pool;
+
+    @Before
+    public void before() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setUrl("jdbc:h2:mem:poolDb;DB_CLOSE_DELAY=-1");
+        pool = new PooledDataSource(dataSource);
+    }
+
+    @After
+    public void after() {
+        pool.close();
+    }
+
+    @Test
+    public void givenReturnedConnection_whenBorrowAgain_thenReused() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        assertThat(first.isClosed()).isTrue();
+
+        Connection second = pool.getConnection();
+        assertThat(second.isClosed()).isFalse();
+        second.close();
+
+        assertThat(pool.getStats().getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getStats().getBorrowCount()).isEqualTo(2);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getActiveCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenExhaustedPool_whenBorrow_thenTimeout() throws SQLException {
+        pool.setMaxSize(1);
+        pool.setMaxWaitMillis(50);
+
+        Connection connection = pool.getConnection();
+        assertThatThrownBy(() -> pool.getConnection())
+                .isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(pool.getStats().getTimeoutCount()).isEqualTo(1);
+        connection.close();
+    }
+
+    @Test
+    public void givenDirtyConnection_whenReturned_thenReset() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        connection = pool.getConnection();
+        assertThat(connection.getAutoCommit()).isTrue();
+        connection.close();
+    }
+
+    @Test
+    public void givenOpenStatement_whenReturned_thenClosed() throws SQLException {
+        Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement();
+        Statement closed = connection.prepareStatement("select 1");
+        closed.close();
+        connection.close();
+
+        assertThat(statement.isClosed()).isTrue();
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenMinSizeAboveMaxSize_thenRejected() {
+        pool.setMaxSize(2);
+        assertThatThrownBy(() -> pool.setMinSize(3)).isInstanceOf(QueryException.class);
+
+        pool.setMinSize(2);
+        assertThatThrownBy(() -> pool.setMaxSize(1)).isInstanceOf(QueryException.class);
+    }
+
+    @Test
+    public void givenChangedSession_whenReturned_thenRolledBackAndRestored() throws SQLException {
+        Connection connection = pool.getConnection();
+        int isolation = connection.getTransactionIsolation();
+        String schema = connection.getSchema();
+        Query.connect(connection)
+                .statement("create table if not exists pool_item (id integer);" +
+                        "delete from pool_item;" +
+                        "create schema if not exists pool_other;")
+                .execute();
+
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        connection.setSchema("POOL_OTHER");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into public.pool_item values (1)");
+        }
+        connection.close();
+
+        connection = pool.getConnection();
+        assertThat(connection.getAutoCommit()).isTrue();
+        assertThat(connection.getTransactionIsolation()).isEqualTo(isolation);
+        assertThat(connection.getSchema()).isEqualTo(schema);
+        // the open transaction of the previous borrower is rolled back
+        assertThat(Query.connect(connection).table("public.pool_item").count()).isEqualTo(0);
+        connection.close();
+
+        assertThat(pool.getStats().getCreatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenDatabaseWrapper_whenManyThreads_thenBoundedConnections() throws InterruptedException {
+        pool.setMaxSize(4);
+        DatabaseWrapper databaseWrapper = new DatabaseWrapper(pool);
+        int number = 50;
+        CountDownLatch latch = new CountDownLatch(number);
+        ExecutorService executorService = Executors.newFixedThreadPool(10);
+
+        for (int i = 0; i < number; i++) {
+            executorService.execute(() -> {
+                try {
+                    databaseWrapper.execute(connection -> {
+                        Query.connect(connection).execute("select 1");
+                    });
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        executorService.shutdown();
+
+        assertThat(pool.getStats().getBorrowCount()).isEqualTo(number);
+        assertThat(pool.getStats().getCreatedCount()).isLessThanOrEqualTo(4);
+        assertThat(pool.getActiveCount()).isEqualTo(0);
+    }
+}